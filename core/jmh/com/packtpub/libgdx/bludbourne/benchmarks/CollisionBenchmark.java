@@ -0,0 +1,101 @@
+package com.packtpub.libgdx.bludbourne.benchmarks;
+
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.MapObject;
+import com.badlogic.gdx.maps.objects.RectangleMapObject;
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.math.Rectangle;
+import com.packtpub.libgdx.bludbourne.CollisionGrid;
+import com.packtpub.libgdx.bludbourne.MapManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Single bounding box query against the collision layer, grid versus scanning every object, and a swept move
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CollisionBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    @Param({"TOWN", "TOP_WORLD", "CASTLE_OF_DOOM"})
+    public String mapName;
+
+    private CollisionGrid collisionGrid;
+    private MapLayer collisionLayer;
+    private Rectangle[] queries;
+    private float[] moves;
+    private int next;
+
+    @Setup
+    public void setup() {
+        HeadlessGame.start();
+
+        MapManager mapManager = new MapManager();
+        mapManager.loadMap(mapName);
+        collisionGrid = mapManager.getCollisionGrid();
+        collisionLayer = mapManager.getCollisionLayer();
+
+        // Player sized boxes anywhere on the map, in pixels
+        RandomXS128 random = new RandomXS128(42);
+        int tileWidth = mapManager.getCurrentMap().getProperties().get("tilewidth", Integer.class);
+        int tileHeight = mapManager.getCurrentMap().getProperties().get("tileheight", Integer.class);
+        float width = mapManager.getCurrentMap().getProperties().get("width", Integer.class) * tileWidth;
+        float height = mapManager.getCurrentMap().getProperties().get("height", Integer.class) * tileHeight;
+        queries = new Rectangle[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = new Rectangle(random.nextFloat() * width, random.nextFloat() * height, 16f, 8f);
+        }
+
+        // Up to a tile in any direction
+        moves = new float[QUERIES * 2];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = (random.nextFloat() * 2f - 1f) * tileWidth;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        HeadlessGame.stop();
+    }
+
+    @Benchmark
+    public boolean grid() {
+        next = (next + 1) & (QUERIES - 1);
+        return collisionGrid.isCollision(queries[next]);
+    }
+
+    @Benchmark
+    public int sweep() {
+        next = (next + 1) & (QUERIES - 1);
+        Rectangle query = queries[next];
+        return collisionGrid.sweep(query.x, query.y, query.width, query.height, moves[next * 2], moves[next * 2 + 1]);
+    }
+
+    @Benchmark
+    public boolean linearScan() {
+        next = (next + 1) & (QUERIES - 1);
+        Rectangle query = queries[next];
+        for (MapObject object : collisionLayer.getObjects()) {
+            if (object instanceof RectangleMapObject && query.overlaps(((RectangleMapObject) object).getRectangle())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,77 @@
+package com.packtpub.libgdx.bludbourne.benchmarks;
+
+import com.packtpub.libgdx.bludbourne.Entity;
+import com.packtpub.libgdx.bludbourne.EntityPool;
+import com.packtpub.libgdx.bludbourne.EntityWorld;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// A burst of entities spawned and despawned, with and without the pool; run with -prof gc to see the allocation
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class EntitySpawnBenchmark {
+
+    @Param({"10", "1000"})
+    public int burstSize;
+
+    private EntityWorld world;
+    private EntityPool pool;
+    private Entity[] burst;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        HeadlessGame.start();
+
+        world = new EntityWorld(burstSize);
+        pool = new EntityPool(world, burstSize, Integer.MAX_VALUE);
+        pool.fill(burstSize);
+        burst = new Entity[burstSize];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.dispose();
+        HeadlessGame.stop();
+    }
+
+    @Benchmark
+    public EntityWorld pooled() {
+        for (int i = 0; i < burstSize; i++) {
+            burst[i] = pool.obtain(i, i);
+        }
+        for (int i = 0; i < burstSize; i++) {
+            pool.free(burst[i]);
+        }
+        return world;
+    }
+
+    @Benchmark
+    public EntityWorld allocated() {
+        for (int i = 0; i < burstSize; i++) {
+            burst[i] = new Entity(world);
+            burst[i].init(i, i);
+            burst[i].setCurrentPosition(i, i);
+        }
+        for (int i = 0; i < burstSize; i++) {
+            burst[i].dispose();
+        }
+        return world;
+    }
+}
@@ -0,0 +1,131 @@
+package com.packtpub.libgdx.bludbourne.benchmarks;
+
+import com.badlogic.gdx.math.RandomXS128;
+import com.packtpub.libgdx.bludbourne.AreaOfInterest;
+import com.packtpub.libgdx.bludbourne.CollisionGrid;
+import com.packtpub.libgdx.bludbourne.Entity;
+import com.packtpub.libgdx.bludbourne.EntityWorld;
+import com.packtpub.libgdx.bludbourne.MapManager;
+import com.packtpub.libgdx.bludbourne.SimulationScheduler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost of one simulation frame for a world full of walking entities on the town map
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class EntityUpdateBenchmark {
+
+    @Param({"10", "100", "10000"})
+    public int entityCount;
+
+    private MapManager mapManager;
+    private EntityWorld world;
+    private Entity[] entities;
+    private SimulationScheduler parallel;
+    private SimulationScheduler sequential;
+    private SimulationScheduler areaOfInterest;
+    private CollisionGrid collisionGrid;
+    private float mapWidth;
+    private float mapHeight;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        HeadlessGame.start();
+
+        mapManager = new MapManager();
+        mapManager.loadMap("TOWN");
+        collisionGrid = mapManager.getCollisionGrid();
+        mapWidth = mapManager.getCurrentMap().getProperties().get("width", Integer.class);
+        mapHeight = mapManager.getCurrentMap().getProperties().get("height", Integer.class);
+
+        world = new EntityWorld(entityCount);
+        entities = new Entity[entityCount];
+        for (int i = 0; i < entityCount; i++) {
+            entities[i] = new Entity(world);
+        }
+
+        parallel = new SimulationScheduler();
+        sequential = new SimulationScheduler(SimulationScheduler.DEFAULT_STEP, 1);
+
+        // A 10x10 view in the middle of the map, as MainGameScreen sets it around the player
+        AreaOfInterest view = new AreaOfInterest();
+        view.setView(mapWidth / 2f, mapHeight / 2f, 10f, 10f);
+        areaOfInterest = new SimulationScheduler();
+        areaOfInterest.setAreaOfInterest(view);
+    }
+
+    // Entities walk into walls or off the map, scatter them again so every iteration does the same work
+    @Setup(Level.Iteration)
+    public void scatter() {
+        RandomXS128 random = new RandomXS128(42);
+        for (Entity entity : entities) {
+            entity.init(random.nextFloat() * mapWidth, random.nextFloat() * mapHeight);
+            entity.setDirection(Entity.Direction.values()[random.nextInt(4)]);
+            entity.setState(Entity.State.WALKING);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (Entity entity : entities) {
+            entity.dispose();
+        }
+        parallel.dispose();
+        sequential.dispose();
+        areaOfInterest.dispose();
+        HeadlessGame.stop();
+    }
+
+    @Benchmark
+    public EntityWorld worldUpdate() {
+        world.update(SimulationScheduler.DEFAULT_STEP);
+        return world;
+    }
+
+    @Benchmark
+    public EntityWorld simulationStep() {
+        parallel.step(world, collisionGrid);
+        return world;
+    }
+
+    @Benchmark
+    public EntityWorld simulationStepSequential() {
+        sequential.step(world, collisionGrid);
+        return world;
+    }
+
+    @Benchmark
+    public EntityWorld simulationStepAreaOfInterest() {
+        areaOfInterest.step(world, collisionGrid);
+        return world;
+    }
+
+    // The per-entity path MainGameScreen used before the world was stepped in bulk
+    @Benchmark
+    public EntityWorld entityUpdate() {
+        for (Entity entity : entities) {
+            entity.update(SimulationScheduler.DEFAULT_STEP);
+            if (!mapManager.isCollision(entity.getBoundingBox())) {
+                entity.setNextPositionToCurrent();
+            }
+        }
+        return world;
+    }
+}
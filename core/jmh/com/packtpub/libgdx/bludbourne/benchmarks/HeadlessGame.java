@@ -0,0 +1,46 @@
+package com.packtpub.libgdx.bludbourne.benchmarks;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.packtpub.libgdx.bludbourne.Utility;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Starts a headless libGDX application for the benchmarks. Files resolve against the working
+ * directory, which the jmh task sets to core/assets. Nothing is rendered and no textures are loaded.
+ */
+final class HeadlessGame {
+
+    private static HeadlessApplication application;
+
+    private HeadlessGame() {
+    }
+
+    static synchronized void start() {
+        if (!isNull(application)) {
+            return;
+        }
+
+        HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+        // The benchmarks drive the game themselves, the application only provides Gdx.files and friends
+        config.renderInterval = -1f;
+
+        Utility.setHeadless(true);
+        application = new HeadlessApplication(new ApplicationAdapter() {}, config);
+        Gdx.app.setLogLevel(Application.LOG_NONE);
+    }
+
+    static synchronized void stop() {
+        if (isNull(application)) {
+            return;
+        }
+
+        Utility.assetManager.clear();
+        application.exit();
+        application = null;
+    }
+}
@@ -0,0 +1,49 @@
+package com.packtpub.libgdx.bludbourne.benchmarks;
+
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.packtpub.libgdx.bludbourne.Utility;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Full load and unload of one map through the asset manager, compiled .bmap when present
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MapLoadBenchmark {
+
+    @Param({"maps/town.tmx", "maps/topworld.tmx", "maps/castle_of_doom.tmx"})
+    public String mapPath;
+
+    @Setup
+    public void setup() {
+        HeadlessGame.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        HeadlessGame.stop();
+    }
+
+    @Benchmark
+    public TiledMap loadMap() {
+        Utility.loadMapAsset(mapPath);
+        TiledMap map = Utility.getMapAsset(mapPath);
+        Utility.unloadMapAsset(mapPath);
+        return map;
+    }
+}
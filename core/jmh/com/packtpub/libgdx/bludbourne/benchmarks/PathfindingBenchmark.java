@@ -0,0 +1,95 @@
+package com.packtpub.libgdx.bludbourne.benchmarks;
+
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.utils.IntArray;
+import com.packtpub.libgdx.bludbourne.MapManager;
+import com.packtpub.libgdx.bludbourne.navigation.NavigationGrid;
+import com.packtpub.libgdx.bludbourne.navigation.PathfindingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Path between random walkable tiles, searched from scratch and served from the cache
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PathfindingBenchmark {
+
+    private static final int QUERIES = 256;
+    private static final int CACHED_QUERIES = PathfindingService.DEFAULT_CACHE_SIZE / 2;
+
+    @Param({"TOWN", "TOP_WORLD", "CASTLE_OF_DOOM"})
+    public String mapName;
+
+    private PathfindingService pathfinder;
+    private PathfindingService uncached;
+    private int[] queries;
+    private IntArray path;
+    private int next;
+
+    @Setup
+    public void setup() {
+        HeadlessGame.start();
+
+        MapManager mapManager = new MapManager();
+        mapManager.loadMap(mapName);
+        pathfinder = mapManager.getPathfinder();
+        NavigationGrid grid = pathfinder.getGrid();
+        uncached = new PathfindingService(grid, 1);
+        path = new IntArray();
+
+        // Start and end tiles, both walkable
+        RandomXS128 random = new RandomXS128(42);
+        queries = new int[QUERIES * 4];
+        for (int i = 0; i < queries.length; i += 2) {
+            int x;
+            int y;
+            do {
+                x = random.nextInt(grid.getWidth());
+                y = random.nextInt(grid.getHeight());
+            } while (!grid.isWalkable(x, y));
+            queries[i] = x;
+            queries[i + 1] = y;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        HeadlessGame.stop();
+    }
+
+    @Benchmark
+    public IntArray search() {
+        int offset = nextQuery();
+        uncached.clearCache();
+        uncached.findPath(queries[offset], queries[offset + 1], queries[offset + 2], queries[offset + 3], path);
+        return path;
+    }
+
+    // Many NPCs heading for the same few places, the working set fits in the cache
+    @Benchmark
+    public IntArray cached() {
+        int offset = nextQuery() % (CACHED_QUERIES * 4);
+        pathfinder.findPath(queries[offset], queries[offset + 1], queries[offset + 2], queries[offset + 3], path);
+        return path;
+    }
+
+    private int nextQuery() {
+        next = (next + 1) & (QUERIES - 1);
+        return next * 4;
+    }
+}
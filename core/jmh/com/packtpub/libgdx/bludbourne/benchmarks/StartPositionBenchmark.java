@@ -0,0 +1,66 @@
+package com.packtpub.libgdx.bludbourne.benchmarks;
+
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.math.Vector2;
+import com.packtpub.libgdx.bludbourne.MapManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Closest player start lookup, what a portal transition pays before the next map is queued
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class StartPositionBenchmark {
+
+    private static final int POSITIONS = 1024;
+
+    @Param({"TOWN", "TOP_WORLD", "CASTLE_OF_DOOM"})
+    public String mapName;
+
+    private MapManager mapManager;
+    private Vector2[] positions;
+    private int next;
+
+    @Setup
+    public void setup() {
+        HeadlessGame.start();
+
+        mapManager = new MapManager();
+        mapManager.loadMap(mapName);
+
+        // Fixed seed so every run queries the same positions, in world units
+        RandomXS128 random = new RandomXS128(42);
+        float width = mapManager.getCurrentMap().getProperties().get("width", Integer.class);
+        float height = mapManager.getCurrentMap().getProperties().get("height", Integer.class);
+        positions = new Vector2[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            positions[i] = new Vector2(random.nextFloat() * width, random.nextFloat() * height);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        HeadlessGame.stop();
+    }
+
+    @Benchmark
+    public void closestStartPosition() {
+        next = (next + 1) & (POSITIONS - 1);
+        mapManager.setClosestStartPositionFromScaledUnits(positions[next]);
+    }
+}
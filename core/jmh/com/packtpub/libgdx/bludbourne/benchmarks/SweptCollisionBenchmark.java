@@ -0,0 +1,130 @@
+package com.packtpub.libgdx.bludbourne.benchmarks;
+
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.objects.RectangleMapObject;
+import com.badlogic.gdx.math.RandomXS128;
+import com.packtpub.libgdx.bludbourne.CollisionGrid;
+import com.packtpub.libgdx.bludbourne.EntityWorld;
+import com.packtpub.libgdx.bludbourne.MapManager;
+import com.packtpub.libgdx.bludbourne.SweptCollisionResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Resolving every mover of a world against the town walls, swept versus testing only the next box.
+// The setup first checks the resolver against a single wall, see verifyResolver()
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SweptCollisionBenchmark {
+
+    private static final float TOLERANCE = 0.001f;
+
+    @Param({"100", "10000"})
+    public int moverCount;
+
+    private CollisionGrid collisionGrid;
+    private EntityWorld world;
+    // Next positions before resolving, restored before every pass
+    private float[] nextX;
+    private float[] nextY;
+
+    @Setup
+    public void setup() {
+        HeadlessGame.start();
+        verifyResolver();
+
+        MapManager mapManager = new MapManager();
+        mapManager.loadMap("TOWN");
+        collisionGrid = mapManager.getCollisionGrid();
+        float mapWidth = mapManager.getCurrentMap().getProperties().get("width", Integer.class);
+        float mapHeight = mapManager.getCurrentMap().getProperties().get("height", Integer.class);
+
+        // Moves of up to four tiles, like fast walkers or area of interest catch-up steps
+        RandomXS128 random = new RandomXS128(42);
+        world = new EntityWorld(moverCount);
+        for (int i = 0; i < moverCount; i++) {
+            int slot = world.create(random.nextFloat() * mapWidth, random.nextFloat() * mapHeight);
+            world.setNextPosition(slot, world.getX(slot) + (random.nextFloat() * 2f - 1f) * 4f,
+                    world.getY(slot) + (random.nextFloat() * 2f - 1f) * 4f);
+        }
+        nextX = world.getNextPositionX().clone();
+        nextY = world.getNextPositionY().clone();
+    }
+
+    @TearDown
+    public void tearDown() {
+        HeadlessGame.stop();
+    }
+
+    @Benchmark
+    public int sweep() {
+        System.arraycopy(nextX, 0, world.getNextPositionX(), 0, moverCount);
+        System.arraycopy(nextY, 0, world.getNextPositionY(), 0, moverCount);
+
+        int blocked = 0;
+        for (int i = 0; i < moverCount; i++) {
+            if (SweptCollisionResolver.resolve(world, collisionGrid, i)) {
+                blocked++;
+            }
+        }
+        return blocked;
+    }
+
+    // What SimulationScheduler did before the sweep, tunnels through walls thinner than the move
+    @Benchmark
+    public int nextBoxOnly() {
+        int blocked = 0;
+        for (int i = 0; i < moverCount; i++) {
+            if (collisionGrid.isCollision(nextX[i] / MapManager.UNIT_SCALE, nextY[i] / MapManager.UNIT_SCALE,
+                    SweptCollisionResolver.BOUNDING_BOX_WIDTH, SweptCollisionResolver.BOUNDING_BOX_HEIGHT)) {
+                blocked++;
+            }
+        }
+        return blocked;
+    }
+
+    // A 16px wide wall at x 100 to 116; the box is 16x8, so it stops flush at x 84
+    private static void verifyResolver() {
+        MapLayer layer = new MapLayer();
+        layer.getObjects().add(new RectangleMapObject(100f, 0f, 16f, 200f));
+        CollisionGrid wall = new CollisionGrid();
+        wall.build(layer);
+
+        check(wall, "stop", 60f, 50f, 40f, 0f, true, 84f, 50f);
+        check(wall, "tunnel", 60f, 50f, 500f, 0f, true, 84f, 50f);
+        check(wall, "diagonal slide", 60f, 50f, 40f, 30f, true, 84f, 80f);
+        check(wall, "along a flush wall", 84f, 50f, 0f, 30f, false, 84f, 80f);
+        check(wall, "escape from inside", 95f, 50f, -20f, 0f, false, 75f, 50f);
+    }
+
+    // Positions in map pixels
+    private static void check(CollisionGrid collisionGrid, String name, float x, float y, float dx, float dy,
+                              boolean expectBlocked, float expectX, float expectY) {
+        EntityWorld world = new EntityWorld(1);
+        int slot = world.create(x * MapManager.UNIT_SCALE, y * MapManager.UNIT_SCALE);
+        world.setNextPosition(slot, (x + dx) * MapManager.UNIT_SCALE, (y + dy) * MapManager.UNIT_SCALE);
+
+        boolean blocked = SweptCollisionResolver.resolve(world, collisionGrid, slot);
+        float resolvedX = world.getNextX(slot) / MapManager.UNIT_SCALE;
+        float resolvedY = world.getNextY(slot) / MapManager.UNIT_SCALE;
+        if (blocked != expectBlocked || Math.abs(resolvedX - expectX) > TOLERANCE || Math.abs(resolvedY - expectY) > TOLERANCE) {
+            throw new IllegalStateException("Swept collision case '" + name + "' ended at (" + resolvedX + ", " + resolvedY
+                    + "), blocked " + blocked + ", expected (" + expectX + ", " + expectY + "), blocked " + expectBlocked);
+        }
+    }
+}
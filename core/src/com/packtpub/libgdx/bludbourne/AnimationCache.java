@@ -0,0 +1,163 @@
+package com.packtpub.libgdx.bludbourne;
+
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Animation;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.packtpub.libgdx.bludbourne.logging.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Shared sprite sheets keyed by path and frame size. The sheet is split and the walk animations
+ * are built once, then handed to every entity using the same sheet. Frames come from the sprite
+ * atlas when the sheet was packed, otherwise from the sheet's own texture. Sheets are reference
+ * counted and an own texture is unloaded when the last user releases it. Render thread only.
+ */
+public final class AnimationCache {
+
+    private static final String TAG = AnimationCache.class.getSimpleName();
+
+    private static final float FRAME_DURATION = 0.25f;
+    private static final int WALK_FRAMES = 4;
+
+    private static final Map<String, SpriteSheet> sheets = new HashMap<>();
+
+    // Shared between entities, callers must not modify the regions or animations
+    public static final class SpriteSheet {
+        private final String key;
+        private final String spritePath;
+        private final TextureRegion[][] frames;
+        private final int frameWidth;
+        private final int frameHeight;
+        // False for sheets in the shared atlas, which stays loaded
+        private final boolean ownsTexture;
+        private final Animation<TextureRegion> walkDownAnimation;
+        private final Animation<TextureRegion> walkLeftAnimation;
+        private final Animation<TextureRegion> walkRightAnimation;
+        private final Animation<TextureRegion> walkUpAnimation;
+        private int references;
+
+        private SpriteSheet(String key, String spritePath, TextureRegion[][] frames, int frameWidth, int frameHeight, boolean ownsTexture) {
+            this.key = key;
+            this.spritePath = spritePath;
+            this.frames = frames;
+            this.frameWidth = frameWidth;
+            this.frameHeight = frameHeight;
+            this.ownsTexture = ownsTexture;
+
+            // Rows of the sheet are down, left, right, up
+            walkDownAnimation = createWalkAnimation(frames, 0);
+            walkLeftAnimation = createWalkAnimation(frames, 1);
+            walkRightAnimation = createWalkAnimation(frames, 2);
+            walkUpAnimation = createWalkAnimation(frames, 3);
+        }
+
+        public String getSpritePath() {
+            return spritePath;
+        }
+
+        public TextureRegion getFrame(int row, int column) {
+            return frames[row][column];
+        }
+
+        public Animation<TextureRegion> getWalkAnimation(Entity.Direction direction) {
+            switch (direction) {
+                case DOWN:
+                    return walkDownAnimation;
+                case LEFT:
+                    return walkLeftAnimation;
+                case RIGHT:
+                    return walkRightAnimation;
+                case UP:
+                default:
+                    return walkUpAnimation;
+            }
+        }
+
+        public int getReferences() {
+            return references;
+        }
+    }
+
+    private AnimationCache() {
+    }
+
+    public static SpriteSheet acquire(String spritePath, int frameWidth, int frameHeight) {
+        String key = spritePath + "#" + frameWidth + "x" + frameHeight;
+
+        SpriteSheet sheet = sheets.get(key);
+        if (isNull(sheet)) {
+            TextureAtlas.AtlasRegion region = Utility.getSpriteRegion(spritePath);
+            if (!isNull(region)) {
+                sheet = new SpriteSheet(key, spritePath, region.split(frameWidth, frameHeight), frameWidth, frameHeight, false);
+            } else {
+                Utility.loadTextureAsset(spritePath);
+                Texture texture = Utility.getTextureAsset(spritePath);
+                if (isNull(texture)) {
+                    throw new GdxRuntimeException("Sprite sheet could not be loaded: " + spritePath);
+                }
+
+                sheet = new SpriteSheet(key, spritePath, TextureRegion.split(texture, frameWidth, frameHeight), frameWidth, frameHeight, true);
+            }
+            sheets.put(key, sheet);
+            Log.debug(TAG, "Built sprite sheet {}", key);
+        }
+
+        sheet.references++;
+        return sheet;
+    }
+
+    public static void release(SpriteSheet sheet) {
+        if (isNull(sheet) || sheet.references <= 0) {
+            return;
+        }
+
+        sheet.references--;
+        if (sheet.references == 0) {
+            sheets.remove(sheet.key);
+            if (sheet.ownsTexture) {
+                Utility.unloadAsset(sheet.spritePath);
+            }
+            Log.debug(TAG, "Released sprite sheet {}", sheet.key);
+        }
+    }
+
+    // The sheet's texture was loaded again and may have changed size, point the existing frames at the same pixels
+    public static void textureReloaded(String spritePath) {
+        for (SpriteSheet sheet : sheets.values()) {
+            if (!sheet.ownsTexture || !sheet.spritePath.equals(spritePath)) {
+                continue;
+            }
+
+            // The regions keep texture coordinates, which are relative to the old size
+            for (int row = 0; row < sheet.frames.length; row++) {
+                for (int column = 0; column < sheet.frames[row].length; column++) {
+                    sheet.frames[row][column].setRegion(column * sheet.frameWidth, row * sheet.frameHeight, sheet.frameWidth, sheet.frameHeight);
+                }
+            }
+            Log.debug(TAG, "Refreshed sprite sheet {}", sheet.key);
+        }
+    }
+
+    public static int size() {
+        return sheets.size();
+    }
+
+    private static Animation<TextureRegion> createWalkAnimation(TextureRegion[][] frames, int row) {
+        Array<TextureRegion> walkFrames = new Array<>(WALK_FRAMES);
+        for (int column = 0; column < WALK_FRAMES; column++) {
+            TextureRegion region = frames[row][column];
+            if (isNull(region)) {
+                Log.debug(TAG, "Got null animation frame {},{}", row, column);
+            }
+            walkFrames.add(region);
+        }
+        return new Animation<>(FRAME_DURATION, walkFrames, Animation.PlayMode.LOOP);
+    }
+}
@@ -0,0 +1,118 @@
+package com.packtpub.libgdx.bludbourne;
+
+import com.badlogic.gdx.math.MathUtils;
+
+/**
+ * Decides how often each entity of an {@link EntityWorld} is simulated, from its distance to the view
+ * around the player. Used by {@link SimulationScheduler} when set:
+ * <ul>
+ * <li>active, in or just around the view: every step</li>
+ * <li>near, within a band around that: every few steps, with the steps in between added up</li>
+ * <li>dormant, everything further away: only checked now and then, the time it slept is simulated
+ * in one go when it wakes up, up to {@link #MAX_CATCH_UP_SECONDS}</li>
+ * </ul>
+ * An entity has to move past the edge of its band by the hysteresis distance before it drops a tier,
+ * so entities on the border do not flip every step. The reduced tiers are staggered by slot, which
+ * spreads them evenly over the steps. A slot that is not due costs a
+ * byte read and a mask test, so the per step cost follows the number of entities around the view
+ * rather than the size of the world.
+ */
+public class AreaOfInterest {
+
+    public static final byte TIER_ACTIVE = 0;
+    public static final byte TIER_NEAR = 1;
+    public static final byte TIER_DORMANT = 2;
+
+    // Distances beyond the edge of the view, in world units
+    public static final float DEFAULT_ACTIVE_MARGIN = 2f;
+    public static final float DEFAULT_NEAR_MARGIN = 12f;
+    public static final float DEFAULT_HYSTERESIS = 1f;
+
+    // In simulation steps, powers of two; dormant entities must be checked often enough to wake before they come into view
+    public static final int DEFAULT_NEAR_INTERVAL = 4;
+    public static final int DEFAULT_DORMANT_INTERVAL = 16;
+
+    // Longer sleeps lose time rather than jump an entity across the map
+    public static final float MAX_CATCH_UP_SECONDS = 5f;
+
+    // Last step of a slot that was never checked
+    public static final int NEVER = -1;
+
+    private float centerX;
+    private float centerY;
+    private float halfWidth;
+    private float halfHeight;
+
+    private float activeMargin = DEFAULT_ACTIVE_MARGIN;
+    private float nearMargin = DEFAULT_NEAR_MARGIN;
+    private float hysteresis = DEFAULT_HYSTERESIS;
+    // Indexed by tier, a slot is due when (slot + step) & mask is 0
+    private final int[] intervalMasks = {0, DEFAULT_NEAR_INTERVAL - 1, DEFAULT_DORMANT_INTERVAL - 1};
+
+    private int stepCount;
+
+    // The view in world units, e.g. the player position and the viewport size; call before the simulation runs
+    public void setView(float centerX, float centerY, float width, float height) {
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.halfWidth = width / 2f;
+        this.halfHeight = height / 2f;
+    }
+
+    public void setMargins(float activeMargin, float nearMargin, float hysteresis) {
+        this.activeMargin = Math.max(0f, activeMargin);
+        this.nearMargin = Math.max(this.activeMargin, nearMargin);
+        this.hysteresis = Math.max(0f, hysteresis);
+    }
+
+    // Rounded up to powers of two
+    public void setIntervals(int nearInterval, int dormantInterval) {
+        nearInterval = MathUtils.nextPowerOfTwo(Math.max(1, nearInterval));
+        intervalMasks[TIER_NEAR] = nearInterval - 1;
+        intervalMasks[TIER_DORMANT] = MathUtils.nextPowerOfTwo(Math.max(nearInterval, dormantInterval)) - 1;
+    }
+
+    // Once per step, before the slots are advanced
+    void beginStep() {
+        stepCount++;
+    }
+
+    // Time to simulate the slot for in this step, 0 to skip it. Only touches the slot's own state, so chunks may run in parallel
+    float advance(EntityWorld world, int slot, float step) {
+        byte[] tiers = world.getTiers();
+        int tier = tiers[slot];
+        if (((slot + stepCount) & intervalMasks[tier]) != 0) {
+            return 0f;
+        }
+
+        int[] lastSteps = world.getLastSteps();
+        if (lastSteps[slot] == NEVER) {
+            // New slots owe time from their first check on
+            lastSteps[slot] = stepCount - 1;
+        }
+
+        tier = classify(world.getX(slot), world.getY(slot), tier);
+        tiers[slot] = (byte) tier;
+        if (tier == TIER_DORMANT) {
+            // Still asleep, the time keeps adding up
+            return 0f;
+        }
+
+        int steps = stepCount - lastSteps[slot];
+        lastSteps[slot] = stepCount;
+        return Math.min(steps * step, MAX_CATCH_UP_SECONDS);
+    }
+
+    private int classify(float x, float y, int tier) {
+        // Distance from the view rectangle, 0 inside it
+        float distance = Math.max(Math.abs(x - centerX) - halfWidth, Math.abs(y - centerY) - halfHeight);
+
+        if (distance <= activeMargin || (tier == TIER_ACTIVE && distance <= activeMargin + hysteresis)) {
+            return TIER_ACTIVE;
+        }
+        if (distance <= nearMargin || (tier != TIER_DORMANT && distance <= nearMargin + hysteresis)) {
+            return TIER_NEAR;
+        }
+        return TIER_DORMANT;
+    }
+}
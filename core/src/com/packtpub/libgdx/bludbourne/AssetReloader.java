@@ -0,0 +1,287 @@
+package com.packtpub.libgdx.bludbourne;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.glutils.PixmapTextureData;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.ObjectFloatMap;
+import com.packtpub.libgdx.bludbourne.logging.Log;
+import com.packtpub.libgdx.bludbourne.maps.BinaryMapFormat;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Development mode reloading of assets edited while the game runs. A file watcher reports changed
+ * files through {@link #assetChanged(String)} from any thread; {@link #update(float)} runs on the
+ * render thread at the start of a frame and only touches what is loaded:
+ * <ul>
+ * <li>a texture is decoded on a background thread and uploaded into the same GL texture, so every
+ * region of it, in sprite sheets and map tilesets alike, shows the new pixels</li>
+ * <li>a map, or a file a loaded map depends on, is queued on the asset manager again while the old
+ * map stays on screen, then swapped into {@link MapManager} at the next frame boundary</li>
+ * </ul>
+ * Files that are not loaded are left alone, they are read fresh the next time they are needed.
+ * Disabled by default, see {@link #setEnabled(boolean)}.
+ */
+public class AssetReloader implements Disposable {
+
+    private static final String TAG = AssetReloader.class.getSimpleName();
+
+    // Editors write a file in several steps, wait until it has been quiet this long
+    public static final float DEFAULT_SETTLE_SECONDS = 0.25f;
+
+    private static volatile boolean enabled = false;
+    private static final ConcurrentLinkedQueue<String> changedPaths = new ConcurrentLinkedQueue<>();
+
+    private final MapManager mapManager;
+    private final ExecutorService decoder;
+    private final ConcurrentLinkedQueue<DecodedTexture> decodedTextures;
+    // Changed paths and the seconds left until they are handled
+    private final ObjectFloatMap<String> settling;
+    private final Array<String> settled;
+    private final Array<MapReload> mapReloads;
+    private float settleSeconds;
+
+    private static final class DecodedTexture {
+        final String path;
+        final Pixmap pixmap;
+
+        DecodedTexture(String path, Pixmap pixmap) {
+            this.path = path;
+            this.pixmap = pixmap;
+        }
+    }
+
+    private static final class MapReload {
+        final String mapFullPath;
+        final int references;
+        // Textures of the old map, held so it can be drawn until the swap
+        final Array<String> heldDependencies;
+        volatile boolean loaded;
+
+        MapReload(String mapFullPath, int references, Array<String> heldDependencies) {
+            this.mapFullPath = mapFullPath;
+            this.references = references;
+            this.heldDependencies = heldDependencies;
+        }
+    }
+
+    public static void setEnabled(boolean enabled) {
+        AssetReloader.enabled = enabled;
+        if (!enabled) {
+            changedPaths.clear();
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    // Any thread; the path is relative to the assets directory, e.g. "maps/town.tmx"
+    public static void assetChanged(String path) {
+        if (enabled) {
+            changedPaths.add(path.replace('\\', '/'));
+        }
+    }
+
+    public AssetReloader(MapManager mapManager) {
+        this.mapManager = mapManager;
+        decodedTextures = new ConcurrentLinkedQueue<>();
+        settling = new ObjectFloatMap<>();
+        settled = new Array<>();
+        mapReloads = new Array<>();
+        settleSeconds = DEFAULT_SETTLE_SECONDS;
+
+        decoder = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "AssetReloader decoder");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public void setSettleSeconds(float settleSeconds) {
+        this.settleSeconds = Math.max(0f, settleSeconds);
+    }
+
+    // Call at the start of a frame, returns true if the current map or its textures changed
+    public boolean update(float delta) {
+        boolean changed = false;
+
+        DecodedTexture decoded;
+        while (!isNull(decoded = decodedTextures.poll())) {
+            changed |= swapTexture(decoded);
+        }
+
+        for (int i = mapReloads.size - 1; i >= 0; i--) {
+            MapReload reload = mapReloads.get(i);
+            if (reload.loaded) {
+                mapReloads.removeIndex(i);
+                changed |= swapMap(reload);
+            }
+        }
+
+        String path;
+        while (!isNull(path = changedPaths.poll())) {
+            settling.put(path, settleSeconds);
+        }
+
+        // A map transition in flight would race the reload, try again once it is done
+        if (settling.size == 0 || mapManager.isLoadingMap()) {
+            return changed;
+        }
+
+        settled.clear();
+        for (ObjectFloatMap.Entry<String> entry : settling.entries()) {
+            if (entry.value - delta <= 0f) {
+                settled.add(entry.key);
+            } else {
+                settling.put(entry.key, entry.value - delta);
+            }
+        }
+        for (String settledPath : settled) {
+            settling.remove(settledPath, 0f);
+            reload(settledPath);
+        }
+
+        return changed;
+    }
+
+    @Override
+    public void dispose() {
+        decoder.shutdownNow();
+
+        DecodedTexture decoded;
+        while (!isNull(decoded = decodedTextures.poll())) {
+            decoded.pixmap.dispose();
+        }
+    }
+
+    private void reload(String path) {
+        if (path.endsWith(BinaryMapFormat.SOURCE_EXTENSION) || path.endsWith(BinaryMapFormat.EXTENSION)) {
+            reloadMap(BinaryMapFormat.sourcePathFor(path));
+            return;
+        }
+
+        if (Utility.assetManager.isLoaded(path, Texture.class)) {
+            decodeTexture(path);
+            return;
+        }
+
+        if (Utility.assetManager.isLoaded(path)) {
+            Log.info(TAG, "{} changed, restart to pick it up", path);
+            return;
+        }
+
+        // Not loaded itself, e.g. a tileset file, reload whatever was built from it
+        for (String dependent : Utility.getDependents(path)) {
+            if (Utility.assetManager.getAssetType(dependent) == TiledMap.class) {
+                reloadMap(BinaryMapFormat.sourcePathFor(dependent));
+            }
+        }
+    }
+
+    private void decodeTexture(final String path) {
+        if (Utility.isHeadless()) {
+            return;
+        }
+
+        decoder.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    decodedTextures.add(new DecodedTexture(path, new Pixmap(Gdx.files.internal(path))));
+                } catch (GdxRuntimeException e) {
+                    // Most likely caught halfway through being written, the next change event retries
+                    Log.error(TAG, "Could not decode {}", path, e);
+                }
+            }
+        });
+    }
+
+    private boolean swapTexture(DecodedTexture decoded) {
+        if (!Utility.assetManager.isLoaded(decoded.path, Texture.class)) {
+            decoded.pixmap.dispose();
+            return false;
+        }
+
+        Texture texture = Utility.assetManager.get(decoded.path, Texture.class);
+        boolean resized = texture.getWidth() != decoded.pixmap.getWidth() || texture.getHeight() != decoded.pixmap.getHeight();
+
+        // Same GL texture, new pixels; the texture data owns the pixmap and disposes it after the upload
+        texture.load(new PixmapTextureData(decoded.pixmap, null, false, true));
+        Log.info(TAG, "Reloaded {}", decoded.path);
+
+        if (resized) {
+            AnimationCache.textureReloaded(decoded.path);
+            // Map tiles cut from the old size would sample the wrong pixels
+            for (String dependent : Utility.getDependents(decoded.path)) {
+                if (Utility.assetManager.getAssetType(dependent) == TiledMap.class) {
+                    reloadMap(BinaryMapFormat.sourcePathFor(dependent));
+                }
+            }
+        }
+        return true;
+    }
+
+    private void reloadMap(String mapFullPath) {
+        String loadedPath = Utility.getLoadedMapAssetPath(mapFullPath);
+        if (isNull(loadedPath)) {
+            return;
+        }
+        for (MapReload reload : mapReloads) {
+            if (reload.mapFullPath.equals(mapFullPath)) {
+                return;
+            }
+        }
+
+        // Keep the old map's textures alive past its unload, they are shared with the new map anyway
+        Array<String> dependencies = new Array<>();
+        Array<String> loadedDependencies = Utility.assetManager.getDependencies(loadedPath);
+        if (!isNull(loadedDependencies)) {
+            dependencies.addAll(loadedDependencies);
+        }
+        for (String dependency : dependencies) {
+            Utility.assetManager.setReferenceCount(dependency, Utility.assetManager.getReferenceCount(dependency) + 1);
+        }
+
+        // Current map, cache and prefetches may all hold a reference, the new map takes them over
+        final MapReload reload = new MapReload(mapFullPath, Utility.assetManager.getReferenceCount(loadedPath), dependencies);
+        Utility.assetManager.setReferenceCount(loadedPath, 1);
+        Utility.unloadAsset(loadedPath);
+
+        mapReloads.add(reload);
+        Utility.loadMapAssetAsync(mapFullPath, new Utility.AssetLoadedListener() {
+            @Override
+            public void assetLoaded(String fileNamePath) {
+                reload.loaded = true;
+            }
+        });
+        Log.debug(TAG, "Reloading {}", mapFullPath);
+    }
+
+    private boolean swapMap(MapReload reload) {
+        String assetPath = Utility.getLoadedMapAssetPath(reload.mapFullPath);
+        if (!isNull(assetPath)) {
+            Utility.assetManager.setReferenceCount(assetPath, reload.references);
+        }
+
+        boolean current = mapManager.swapReloadedMap(reload.mapFullPath);
+
+        for (String dependency : reload.heldDependencies) {
+            Utility.unloadAsset(dependency);
+        }
+        return current;
+    }
+}
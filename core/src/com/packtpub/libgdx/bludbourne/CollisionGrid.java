@@ -0,0 +1,384 @@
+package com.packtpub.libgdx.bludbourne;
+
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.MapObject;
+import com.badlogic.gdx.maps.objects.RectangleMapObject;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.IntArray;
+import com.packtpub.libgdx.bludbourne.logging.Log;
+import com.packtpub.libgdx.bludbourne.profiling.Profiler;
+
+import java.util.Arrays;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Uniform grid over the rectangles of a collision layer. Rectangles are kept in flat float arrays
+ * and every cell lists the rectangles overlapping it, so a query only tests the cells the query
+ * box touches instead of every object in the layer. Coordinates are in map pixels, the same
+ * space the {@link Entity} bounding box is expressed in.
+ */
+public class CollisionGrid {
+
+    private static final String TAG = CollisionGrid.class.getSimpleName();
+
+    // 4x4 tiles of 16px per cell
+    public static final float DEFAULT_CELL_SIZE = 64f;
+
+    private final float cellSize;
+
+    private float originX;
+    private float originY;
+    private int columns;
+    private int rows;
+
+    // x, y, width, height for each rectangle
+    private float[] rectangles = new float[0];
+    private int rectangleCount;
+
+    // Cell contents in compressed form: the rectangles of cell c are cellItems[cellStart[c] .. cellStart[c + 1])
+    private int[] cellStart = new int[1];
+    private int[] cellItems = new int[0];
+    // Bounds of the rectangle behind every cell item, so a sweep runs over contiguous arrays
+    private float[] itemMinX = new float[0];
+    private float[] itemMinY = new float[0];
+    private float[] itemMaxX = new float[0];
+    private float[] itemMaxY = new float[0];
+
+    // Used by queryRegion() so a rectangle spanning several cells is only reported once
+    private int[] queryStamps = new int[0];
+    private int currentStamp;
+
+    public CollisionGrid() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    public CollisionGrid(float cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive: " + cellSize);
+        }
+        this.cellSize = cellSize;
+    }
+
+    public void clear() {
+        rectangleCount = 0;
+        columns = 0;
+        rows = 0;
+        cellStart[0] = 0;
+    }
+
+    public void build(MapLayer collisionLayer) {
+        clear();
+
+        if (isNull(collisionLayer)) {
+            return;
+        }
+
+        int objectCount = collisionLayer.getObjects().getCount();
+        ensureRectangleCapacity(objectCount);
+
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+
+        for (MapObject mapObject : collisionLayer.getObjects()) {
+            if (!(mapObject instanceof RectangleMapObject)) {
+                continue;
+            }
+
+            Rectangle rectangle = ((RectangleMapObject) mapObject).getRectangle();
+            int offset = rectangleCount * 4;
+            rectangles[offset] = rectangle.x;
+            rectangles[offset + 1] = rectangle.y;
+            rectangles[offset + 2] = rectangle.width;
+            rectangles[offset + 3] = rectangle.height;
+            rectangleCount++;
+
+            minX = Math.min(minX, rectangle.x);
+            minY = Math.min(minY, rectangle.y);
+            maxX = Math.max(maxX, rectangle.x + rectangle.width);
+            maxY = Math.max(maxY, rectangle.y + rectangle.height);
+        }
+
+        if (rectangleCount == 0) {
+            return;
+        }
+
+        originX = minX;
+        originY = minY;
+        columns = Math.max(1, MathUtils.ceil((maxX - minX) / cellSize));
+        rows = Math.max(1, MathUtils.ceil((maxY - minY) / cellSize));
+
+        int cellCount = columns * rows;
+        if (cellStart.length < cellCount + 1) {
+            cellStart = new int[cellCount + 1];
+        } else {
+            Arrays.fill(cellStart, 0, cellCount + 1, 0);
+        }
+
+        // First pass counts the rectangles per cell, second pass fills them in
+        for (int i = 0; i < rectangleCount; i++) {
+            int offset = i * 4;
+            int x0 = cellColumn(rectangles[offset]);
+            int x1 = cellColumn(rectangles[offset] + rectangles[offset + 2]);
+            int y0 = cellRow(rectangles[offset + 1]);
+            int y1 = cellRow(rectangles[offset + 1] + rectangles[offset + 3]);
+            for (int y = y0; y <= y1; y++) {
+                for (int x = x0; x <= x1; x++) {
+                    cellStart[y * columns + x + 1]++;
+                }
+            }
+        }
+
+        for (int c = 0; c < cellCount; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+
+        int totalItems = cellStart[cellCount];
+        if (cellItems.length < totalItems) {
+            cellItems = new int[totalItems];
+            itemMinX = new float[totalItems];
+            itemMinY = new float[totalItems];
+            itemMaxX = new float[totalItems];
+            itemMaxY = new float[totalItems];
+        }
+
+        int[] fill = new int[cellCount];
+        for (int i = 0; i < rectangleCount; i++) {
+            int offset = i * 4;
+            int x0 = cellColumn(rectangles[offset]);
+            int x1 = cellColumn(rectangles[offset] + rectangles[offset + 2]);
+            int y0 = cellRow(rectangles[offset + 1]);
+            int y1 = cellRow(rectangles[offset + 1] + rectangles[offset + 3]);
+            for (int y = y0; y <= y1; y++) {
+                for (int x = x0; x <= x1; x++) {
+                    int cell = y * columns + x;
+                    int item = cellStart[cell] + fill[cell]++;
+                    cellItems[item] = i;
+                    itemMinX[item] = rectangles[offset];
+                    itemMinY[item] = rectangles[offset + 1];
+                    itemMaxX[item] = rectangles[offset] + rectangles[offset + 2];
+                    itemMaxY[item] = rectangles[offset + 1] + rectangles[offset + 3];
+                }
+            }
+        }
+
+        Log.debug(TAG, "Indexed {} rectangles into {}x{} cells", rectangleCount, columns, rows);
+    }
+
+    public boolean isCollision(Rectangle boundingBox) {
+        return isCollision(boundingBox.x, boundingBox.y, boundingBox.width, boundingBox.height);
+    }
+
+    // Only reads the grid and records into the lock-free profiler, so it is safe to call from several threads at once
+    public boolean isCollision(float x, float y, float width, float height) {
+        long start = Profiler.start();
+        boolean collision = query(x, y, width, height);
+        Profiler.stop(Profiler.COLLISION_QUERY, start);
+        return collision;
+    }
+
+    private boolean query(float x, float y, float width, float height) {
+        if (!overlapsGrid(x, y, width, height)) {
+            return false;
+        }
+
+        int x0 = cellColumn(x);
+        int x1 = cellColumn(x + width);
+        int y0 = cellRow(y);
+        int y1 = cellRow(y + height);
+
+        for (int cy = y0; cy <= y1; cy++) {
+            for (int cx = x0; cx <= x1; cx++) {
+                int cell = cy * columns + cx;
+                for (int i = cellStart[cell], end = cellStart[cell + 1]; i < end; i++) {
+                    if (overlaps(cellItems[i], x, y, width, height)) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Moves the box by (dx, dy) and returns the index of the first rectangle it runs into, -1 if none.
+     * Boxes that only touch a rectangle, or already overlap it at the start, do not hit it. Like
+     * {@link #isCollision(float, float, float, float)} it only reads the grid.
+     */
+    public int sweep(float x, float y, float width, float height, float dx, float dy) {
+        long start = Profiler.start();
+        int hit = -1;
+
+        float sweptX = Math.min(x, x + dx);
+        float sweptY = Math.min(y, y + dy);
+        float sweptWidth = width + Math.abs(dx);
+        float sweptHeight = height + Math.abs(dy);
+
+        if (overlapsGrid(sweptX, sweptY, sweptWidth, sweptHeight)) {
+            float inverseDx = 1f / dx;
+            float inverseDy = 1f / dy;
+            boolean right = dx > 0f;
+            boolean up = dy > 0f;
+            float firstTime = 1f;
+
+            int x0 = cellColumn(sweptX);
+            int x1 = cellColumn(sweptX + sweptWidth);
+            int y0 = cellRow(sweptY);
+            int y1 = cellRow(sweptY + sweptHeight);
+
+            for (int cy = y0; cy <= y1; cy++) {
+                for (int cx = x0; cx <= x1; cx++) {
+                    int cell = cy * columns + cx;
+                    for (int i = cellStart[cell], end = cellStart[cell + 1]; i < end; i++) {
+                        // The box overlaps the rectangle while its corner is strictly inside these ranges
+                        float lowX = itemMinX[i] - width;
+                        float highX = itemMaxX[i];
+                        float lowY = itemMinY[i] - height;
+                        float highY = itemMaxY[i];
+
+                        float entry = Math.max(
+                                entryTime(x, dx, inverseDx, right ? lowX : highX, lowX, highX),
+                                entryTime(y, dy, inverseDy, up ? lowY : highY, lowY, highY));
+                        float exit = Math.min(
+                                exitTime(x, dx, inverseDx, right ? highX : lowX),
+                                exitTime(y, dy, inverseDy, up ? highY : lowY));
+
+                        if (entry >= 0f && entry < firstTime && entry < exit) {
+                            firstTime = entry;
+                            hit = cellItems[i];
+                        }
+                    }
+                }
+            }
+        }
+
+        Profiler.stop(Profiler.COLLISION_QUERY, start);
+        return hit;
+    }
+
+    // Adds the index of every rectangle overlapping the region to results and returns how many were added
+    public int queryRegion(Rectangle region, IntArray results) {
+        return queryRegion(region.x, region.y, region.width, region.height, results);
+    }
+
+    public int queryRegion(float x, float y, float width, float height, IntArray results) {
+        if (!overlapsGrid(x, y, width, height)) {
+            return 0;
+        }
+
+        int stamp = nextStamp();
+        int found = 0;
+
+        int x0 = cellColumn(x);
+        int x1 = cellColumn(x + width);
+        int y0 = cellRow(y);
+        int y1 = cellRow(y + height);
+
+        for (int cy = y0; cy <= y1; cy++) {
+            for (int cx = x0; cx <= x1; cx++) {
+                int cell = cy * columns + cx;
+                for (int i = cellStart[cell], end = cellStart[cell + 1]; i < end; i++) {
+                    int index = cellItems[i];
+                    if (queryStamps[index] == stamp) {
+                        continue;
+                    }
+                    queryStamps[index] = stamp;
+
+                    if (overlaps(index, x, y, width, height)) {
+                        results.add(index);
+                        found++;
+                    }
+                }
+            }
+        }
+
+        return found;
+    }
+
+    public Rectangle getRectangle(int index, Rectangle out) {
+        int offset = index * 4;
+        return out.set(rectangles[offset], rectangles[offset + 1], rectangles[offset + 2], rectangles[offset + 3]);
+    }
+
+    public float getRectangleX(int index) {
+        return rectangles[index * 4];
+    }
+
+    public float getRectangleY(int index) {
+        return rectangles[index * 4 + 1];
+    }
+
+    public float getRectangleWidth(int index) {
+        return rectangles[index * 4 + 2];
+    }
+
+    public float getRectangleHeight(int index) {
+        return rectangles[index * 4 + 3];
+    }
+
+    public int getRectangleCount() {
+        return rectangleCount;
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    // Same edge rules as Rectangle.overlaps(), touching edges do not collide
+    private boolean overlaps(int index, float x, float y, float width, float height) {
+        int offset = index * 4;
+        float rx = rectangles[offset];
+        float ry = rectangles[offset + 1];
+        return x < rx + rectangles[offset + 2] && x + width > rx
+                && y < ry + rectangles[offset + 3] && y + height > ry;
+    }
+
+    // Fraction of the move at which the axis starts overlapping, -infinity or infinity when not moving on it
+    static float entryTime(float position, float delta, float inverseDelta, float near, float low, float high) {
+        if (delta == 0f) {
+            return low < position && position < high ? Float.NEGATIVE_INFINITY : Float.POSITIVE_INFINITY;
+        }
+        return (near - position) * inverseDelta;
+    }
+
+    static float exitTime(float position, float delta, float inverseDelta, float far) {
+        return delta == 0f ? Float.POSITIVE_INFINITY : (far - position) * inverseDelta;
+    }
+
+    private boolean overlapsGrid(float x, float y, float width, float height) {
+        return rectangleCount > 0
+                && x <= originX + columns * cellSize && x + width >= originX
+                && y <= originY + rows * cellSize && y + height >= originY;
+    }
+
+    private int cellColumn(float x) {
+        return MathUtils.clamp((int) Math.floor((x - originX) / cellSize), 0, columns - 1);
+    }
+
+    private int cellRow(float y) {
+        return MathUtils.clamp((int) Math.floor((y - originY) / cellSize), 0, rows - 1);
+    }
+
+    private int nextStamp() {
+        currentStamp++;
+        if (currentStamp == Integer.MAX_VALUE) {
+            Arrays.fill(queryStamps, 0);
+            currentStamp = 1;
+        }
+        return currentStamp;
+    }
+
+    private void ensureRectangleCapacity(int count) {
+        if (rectangles.length < count * 4) {
+            rectangles = new float[count * 4];
+        }
+        if (queryStamps.length < count) {
+            queryStamps = new int[count];
+            currentStamp = 0;
+        }
+    }
+}
@@ -1,26 +1,25 @@
 package com.packtpub.libgdx.bludbourne;
 
-import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.Animation;
 import com.badlogic.gdx.graphics.g2d.Sprite;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector2;
-import com.badlogic.gdx.utils.Array;
-
-import java.util.Objects;
-import java.util.UUID;
+import com.badlogic.gdx.utils.Pool;
+import com.packtpub.libgdx.bludbourne.logging.Log;
 
 import static java.util.Objects.isNull;
 
-public class Entity {
+/**
+ * An entity of an {@link EntityWorld}. Short-lived entities should come from an {@link EntityPool}:
+ * {@link #reset()} gives the slot back to the world but keeps the sprite and vectors, and the next
+ * {@link #init(float, float)} takes a new slot.
+ */
+public class Entity implements Pool.Poolable {
 
     private static final String TAG = Entity.class.getSimpleName();
     private static final String defaultSpritePath = "sprites/characters/Warrior.png";
 
-    public static Rectangle boundingBox;
-
     public final int FRAME_WIDTH = 16;
     public final int FRAME_HEIGHT = 16;
 
@@ -32,48 +31,100 @@ public class Entity {
         UP,RIGHT,DOWN,LEFT;
     }
 
-    private String entityId;
+    // Cached because values() copies the array on every call
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final State[] STATES = State.values();
+
+    // Used by entities created without a world of their own
+    private static final EntityWorld defaultWorld = new EntityWorld();
+
+    private int entityId;
 
-    private Vector2 velocity;
+    // Simulation state lives in the world's arrays, this object is a view over one slot
+    private EntityWorld world;
+    private int slot;
 
-    private Direction currentDirection = Direction.LEFT;
     private Direction previousDirection = Direction.UP;
 
+    // Where the entity is headed, in map pixels, see updateBoundingBox()
+    private final Rectangle boundingBox;
+
+    private AnimationCache.SpriteSheet spriteSheet;
     private Animation<TextureRegion> walkLeftAnimation;
     private Animation<TextureRegion> walkRightAnimation;
     private Animation<TextureRegion> walkUpAnimation;
     private Animation<TextureRegion> walkDownAnimation;
 
+    // Refreshed from the world when handed out
     protected Vector2 nextPlayerPosition;
     protected Vector2 currentPlayerPosition;
-    protected State state = State.IDLE;
-    protected float frameTime = 0f;
     protected Sprite frameSprite;
     protected TextureRegion currentFrame;
 
     public Entity() {
-        entityId = UUID.randomUUID().toString();
+        this(defaultWorld);
+    }
+
+    public Entity(EntityWorld world) {
+        this.world = world;
+        slot = world.create(0f, 0f);
+        entityId = world.getId(slot);
+
         nextPlayerPosition = new Vector2();
         currentPlayerPosition = new Vector2();
         boundingBox = new Rectangle();
-        velocity = new Vector2(2f, 2f);
 
-        Utility.loadTextureAsset(defaultSpritePath);
-        loadDefaultSprite();
-        loadAllAnimations();
+        if (Utility.isHeadless()) {
+            // Simulation only, there is nothing to draw with
+            frameSprite = new Sprite();
+            frameSprite.setSize(FRAME_WIDTH, FRAME_HEIGHT);
+        } else {
+            spriteSheet = AnimationCache.acquire(defaultSpritePath, FRAME_WIDTH, FRAME_HEIGHT);
+            loadDefaultSprite();
+            loadAllAnimations();
+        }
+    }
+
+    public static EntityWorld getDefaultWorld() {
+        return defaultWorld;
     }
 
     public void init(float startX, float startY) {
-        currentPlayerPosition.x = startX;
-        currentPlayerPosition.y = startY;
+        if (slot < 0) {
+            slot = world.create(startX, startY);
+            entityId = world.getId(slot);
+        }
+        world.setPosition(slot, startX, startY);
+        world.setNextPosition(slot, startX, startY);
+    }
+
+    // Leaves the slot in the current world for one in the other, e.g. when the player changes maps; keeps direction and state
+    public void moveTo(EntityWorld other, float startX, float startY) {
+        if (slot < 0) {
+            world = other;
+            init(startX, startY);
+            return;
+        }
+
+        int direction = world.getDirection(slot);
+        int state = world.getState(slot);
+        world.destroy(slot);
 
-        nextPlayerPosition.x = startX;
-        nextPlayerPosition.y = startY;
+        world = other;
+        slot = world.create(startX, startY);
+        entityId = world.getId(slot);
+        world.setDirection(slot, direction);
+        world.setState(slot, state);
     }
 
+    // Advances this entity only; when the whole world is stepped with EntityWorld.update() use updateBoundingBox() instead
     public void update(float delta) {
-        frameTime = (frameTime + delta) % 5; // Want to avoid overflow
+        world.updateEntity(slot, delta);
 
+        updateBoundingBox();
+    }
+
+    public void updateBoundingBox() {
         setBoundingBoxSize(0f, 0.5f);
     }
 
@@ -98,35 +149,93 @@ public class Entity {
         }
 
 
-        if( width == 0 || height == 0){
-            Gdx.app.debug(TAG, "Width and Height are 0!! " + width + ":" + height);
+        if( width == 0 || height == 0 ){
+            Log.debug(TAG, "Width and Height are 0!! {}:{}", width, height);
         }
 
         //Need to account for the unitscale, since the map coordinates will be in pixels
         float minX;
         float minY;
         if(MapManager.UNIT_SCALE > 0) {
-            minX = nextPlayerPosition.x / MapManager.UNIT_SCALE;
-            minY = nextPlayerPosition.y / MapManager.UNIT_SCALE;
+            minX = world.getNextX(slot) / MapManager.UNIT_SCALE;
+            minY = world.getNextY(slot) / MapManager.UNIT_SCALE;
         }else{
-            minX = nextPlayerPosition.x;
-            minY = nextPlayerPosition.y;
+            minX = world.getNextX(slot);
+            minY = world.getNextY(slot);
         }
 
         boundingBox.set(minX, minY, width, height);
     }
 
-    public void dispose() { Utility.unloadAsset(defaultSpritePath); }
+    public void dispose() {
+        // Only the last entity using the sheet unloads its texture
+        AnimationCache.release(spriteSheet);
+        spriteSheet = null;
+
+        if (slot >= 0) {
+            world.destroy(slot);
+            slot = -1;
+        }
+    }
+
+    @Override
+    public void reset() {
+        if (slot >= 0) {
+            world.destroy(slot);
+            slot = -1;
+        }
+        entityId = -1;
+
+        previousDirection = Direction.UP;
+        if (!isNull(spriteSheet)) {
+            currentFrame = spriteSheet.getFrame(0, 0);
+        }
+    }
 
     public void setState(State state) {
-        this.state = state;
+        world.setState(slot, state.ordinal());
+    }
+
+    public State getState() {
+        return STATES[world.getState(slot)];
+    }
+
+    public Direction getCurrentDirection() {
+        return DIRECTIONS[world.getDirection(slot)];
+    }
+
+    public Direction getPreviousDirection() {
+        return previousDirection;
+    }
+
+    public EntityWorld getWorld() {
+        return world;
+    }
+
+    // Compact and unique within the world while the entity is alive, -1 once reset, see EntityWorld.getSlot(int)
+    public int getEntityId() {
+        return entityId;
+    }
+
+    public int getSlot() {
+        return slot;
     }
 
     public Vector2 getCurrentPlayerPosition() {
-        return currentPlayerPosition;
+        return currentPlayerPosition.set(world.getX(slot), world.getY(slot));
+    }
+
+    public Vector2 getNextPlayerPosition() {
+        return nextPlayerPosition.set(world.getNextX(slot), world.getNextY(slot));
+    }
+
+    public Rectangle getBoundingBox() {
+        return boundingBox;
     }
 
     public Sprite getFrameSprite() {
+        // The world may have moved us in bulk since the last call
+        frameSprite.setPosition(world.getX(slot), world.getY(slot));
         return frameSprite;
     }
 
@@ -137,17 +246,22 @@ public class Entity {
     public void setCurrentPosition(float currentPositionX, float currentPositionY){
         frameSprite.setX(currentPositionX);
         frameSprite.setY(currentPositionY);
-        currentPlayerPosition.x = currentPositionX;
-        currentPlayerPosition.y = currentPositionY;
+        world.setPosition(slot, currentPositionX, currentPositionY);
     }
 
     public void setDirection(Direction direction){
-        previousDirection = currentDirection;
-        currentDirection = direction;
+        previousDirection = getCurrentDirection();
+        world.setDirection(slot, direction.ordinal());
+
+        if (isNull(spriteSheet)) {
+            return;
+        }
+
+        float frameTime = world.getFrameTime(slot);
 
         //Look into the appropriate variable when changing position
 
-        switch (currentDirection) {
+        switch (direction) {
             case DOWN :
                 currentFrame = walkDownAnimation.getKeyFrame(frameTime);
                 break;
@@ -166,82 +280,25 @@ public class Entity {
     }
 
     public void setNextPositionToCurrent(){
-        setCurrentPosition(nextPlayerPosition.x, nextPlayerPosition.y);
+        setCurrentPosition(world.getNextX(slot), world.getNextY(slot));
     }
 
-
     public void calculateNextPosition(Direction currentDirection, float deltaTime){
-        float testX = currentPlayerPosition.x;
-        float testY = currentPlayerPosition.y;
-
-        velocity.scl(deltaTime);
-
-        switch (currentDirection) {
-            case LEFT :
-                testX -=  velocity.x;
-                break;
-            case RIGHT :
-                testX += velocity.x;
-                break;
-            case UP :
-                testY += velocity.y;
-                break;
-            case DOWN :
-                testY -= velocity.y;
-                break;
-            default:
-                break;
-        }
-
-        nextPlayerPosition.x = testX;
-        nextPlayerPosition.y = testY;
-
-        velocity.scl(1 / deltaTime);
+        world.calculateNextPosition(slot, currentDirection.ordinal(), deltaTime);
     }
 
     private void loadDefaultSprite() {
-        Texture texture = Utility.getTextureAsset(defaultSpritePath);
-        TextureRegion[][] textureFrames = TextureRegion.split(Objects.requireNonNull(texture), FRAME_WIDTH, FRAME_HEIGHT);
-        currentFrame = textureFrames[0][0];
-        frameSprite = new Sprite(currentFrame.getTexture(), 0, 0, FRAME_WIDTH, FRAME_HEIGHT);
+        currentFrame = spriteSheet.getFrame(0, 0);
+        // The frame may be a region of a shared atlas page, not a texture of its own
+        frameSprite = new Sprite(currentFrame);
+        frameSprite.setSize(FRAME_WIDTH, FRAME_HEIGHT);
     }
 
     private void loadAllAnimations() {
-        // Walking animation
-        Texture texture = Utility.getTextureAsset(defaultSpritePath);
-        TextureRegion[][] textureFrames = TextureRegion.split(Objects.requireNonNull(texture), FRAME_WIDTH, FRAME_HEIGHT);
-
-        Array<TextureRegion> walkDownFrames = new Array<>(4);
-        Array<TextureRegion> walkLeftFrames = new Array<>(4);
-        Array<TextureRegion> walkRightFrames = new Array<>(4);
-        Array<TextureRegion> walkUpFrames = new Array<>(4);
-
-        for (int i = 0; i < 4; i++) {
-            for (int j = 0; j < 4; j++) {
-                TextureRegion region = textureFrames[i][j];
-                if(isNull(region)) {
-                    Gdx.app.debug(TAG, "Got null animation frame " + i + "," + j);
-                }
-                switch(i) {
-                    case 0:
-                        walkDownFrames.insert(j, region);
-                        break;
-                    case 1:
-                        walkLeftFrames.insert(j, region);
-                        break;
-                    case 2:
-                        walkRightFrames.insert(j, region);
-                        break;
-                    case 3:
-                        walkUpFrames.insert(j, region);
-                        break;
-                }
-            }
-        }
-
-        walkDownAnimation = new Animation(0.25f, walkDownFrames, Animation.PlayMode.LOOP);
-        walkLeftAnimation = new Animation(0.25f, walkLeftFrames, Animation.PlayMode.LOOP);
-        walkRightAnimation = new Animation(0.25f, walkRightFrames, Animation.PlayMode.LOOP);
-        walkUpAnimation = new Animation(0.25f, walkUpFrames, Animation.PlayMode.LOOP);
+        // Walking animation, shared with every other entity using this sheet
+        walkDownAnimation = spriteSheet.getWalkAnimation(Direction.DOWN);
+        walkLeftAnimation = spriteSheet.getWalkAnimation(Direction.LEFT);
+        walkRightAnimation = spriteSheet.getWalkAnimation(Direction.RIGHT);
+        walkUpAnimation = spriteSheet.getWalkAnimation(Direction.UP);
     }
 }
@@ -0,0 +1,111 @@
+package com.packtpub.libgdx.bludbourne;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.Pool;
+import com.packtpub.libgdx.bludbourne.logging.Log;
+import com.packtpub.libgdx.bludbourne.profiling.Profiler;
+
+/**
+ * Pool of entities of one world for monsters, projectiles, pickups and whatever else comes and goes.
+ * A freed entity gives its world slot back right away and keeps its sprite, vectors and sprite sheet
+ * for the next {@link #obtain(float, float)}, so once the pool is warm a spawn burst allocates nothing.
+ * Fill it up front with {@link #fill(int)} when the size of the bursts is known.
+ *
+ * Every entity the pool had to create is counted in {@link Profiler#ENTITY_POOL_MISSES}.
+ */
+public class EntityPool extends Pool<Entity> implements Disposable {
+
+    private static final String TAG = EntityPool.class.getSimpleName();
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final EntityWorld world;
+    // Everything the pool created, in use or not, so dispose() can release the sprite sheets
+    private final Array<Entity> created;
+    private int inUse;
+    private int peakInUse;
+
+    public EntityPool(EntityWorld world) {
+        this(world, DEFAULT_CAPACITY, Integer.MAX_VALUE);
+    }
+
+    public EntityPool(EntityWorld world, int initialCapacity, int max) {
+        super(initialCapacity, max);
+        this.world = world;
+        created = new Array<>(false, initialCapacity, Entity.class);
+    }
+
+    @Override
+    protected Entity newObject() {
+        Entity entity = new Entity(world);
+        created.add(entity);
+        Profiler.count(Profiler.ENTITY_POOL_MISSES, 1);
+        return entity;
+    }
+
+    // Takes an entity from the pool and puts it into the world at the position
+    public Entity obtain(float x, float y) {
+        Entity entity = obtain();
+        entity.init(x, y);
+        entity.setCurrentPosition(x, y);
+        return entity;
+    }
+
+    @Override
+    public Entity obtain() {
+        Entity entity = super.obtain();
+        inUse++;
+        if (inUse > peakInUse) {
+            peakInUse = inUse;
+        }
+        return entity;
+    }
+
+    @Override
+    public void free(Entity entity) {
+        super.free(entity);
+        inUse--;
+    }
+
+    // Creates entities until count of them are free
+    public void fill(int count) {
+        for (int i = getFree(); i < count; i++) {
+            // Not through free(), it was never handed out
+            super.free(newObject());
+        }
+    }
+
+    public EntityWorld getWorld() {
+        return world;
+    }
+
+    public int getInUse() {
+        return inUse;
+    }
+
+    public int getPeakInUse() {
+        return peakInUse;
+    }
+
+    public int getCreated() {
+        return created.size;
+    }
+
+    // In use out of created, 1 means the next obtain() allocates
+    public float getOccupancy() {
+        return created.size == 0 ? 0f : (float) inUse / created.size;
+    }
+
+    @Override
+    public void dispose() {
+        Log.info(TAG, "{} entities created, at most {} in use", created.size, peakInUse);
+
+        for (Entity entity : created) {
+            entity.dispose();
+        }
+        created.clear();
+        clear();
+        inUse = 0;
+    }
+}
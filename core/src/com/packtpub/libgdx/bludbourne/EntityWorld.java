@@ -0,0 +1,397 @@
+package com.packtpub.libgdx.bludbourne;
+
+import java.util.Arrays;
+
+/**
+ * Struct-of-arrays storage for entity simulation state. Each entity owns a slot index into the
+ * parallel primitive arrays below; {@link Entity} is a view over one slot. {@link #update(float)}
+ * advances every live entity in a single loop without touching any per-entity object.
+ *
+ * The array getters hand out the backing arrays for bulk processing. They are replaced when the
+ * world grows, so do not keep them across calls to {@link #create(float, float)}.
+ *
+ * Slots whose saved state changed (alive, position, direction or state) are marked in a dirty bitset,
+ * see {@link #nextDirty(int)}. Writes through the array getters are not tracked.
+ *
+ * Slots are reused, so entities are identified by an id that combines the slot with a generation
+ * counted up every time the slot is freed, see {@link #getId(int)} and {@link #getSlot(int)}.
+ */
+public class EntityWorld {
+
+    public static final int DEFAULT_CAPACITY = 64;
+    public static final float DEFAULT_VELOCITY = 2f;
+
+    // Keep frame time bounded to avoid overflow, matches the animation loop length
+    private static final float FRAME_TIME_WRAP = 5f;
+
+    // Unit steps indexed by Entity.Direction ordinal: UP, RIGHT, DOWN, LEFT
+    private static final float[] DIRECTION_X = {0f, 1f, 0f, -1f};
+    private static final float[] DIRECTION_Y = {1f, 0f, -1f, 0f};
+
+    public static final int DIRECTION_UP = Entity.Direction.UP.ordinal();
+    public static final int DIRECTION_RIGHT = Entity.Direction.RIGHT.ordinal();
+    public static final int DIRECTION_DOWN = Entity.Direction.DOWN.ordinal();
+    public static final int DIRECTION_LEFT = Entity.Direction.LEFT.ordinal();
+
+    public static final int STATE_IDLE = Entity.State.IDLE.ordinal();
+    public static final int STATE_WALKING = Entity.State.WALKING.ordinal();
+
+    // Ids keep the slot in the low bits and the generation in the rest
+    private static final int ID_SLOT_BITS = 20;
+    private static final int ID_SLOT_MASK = (1 << ID_SLOT_BITS) - 1;
+    private static final int ID_GENERATION_MASK = (1 << (31 - ID_SLOT_BITS)) - 1;
+
+    private int capacity;
+    // Slots [0, size) have been handed out at least once, freed ones are reused first
+    private int size;
+    private int liveCount;
+
+    private float[] positionX;
+    private float[] positionY;
+    private float[] nextPositionX;
+    private float[] nextPositionY;
+    private float[] velocityX;
+    private float[] velocityY;
+    private float[] frameTime;
+    private int[] direction;
+    private int[] state;
+    private boolean[] alive;
+    private int[] generation;
+    // Owned by AreaOfInterest: how often the slot is simulated, and the step it was last simulated in
+    private byte[] tier;
+    private int[] lastStep;
+
+    private int[] freeSlots;
+    private int freeCount;
+
+    private long[] dirty;
+
+    public EntityWorld() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public EntityWorld(int initialCapacity) {
+        capacity = Math.max(1, initialCapacity);
+        positionX = new float[capacity];
+        positionY = new float[capacity];
+        nextPositionX = new float[capacity];
+        nextPositionY = new float[capacity];
+        velocityX = new float[capacity];
+        velocityY = new float[capacity];
+        frameTime = new float[capacity];
+        direction = new int[capacity];
+        state = new int[capacity];
+        alive = new boolean[capacity];
+        generation = new int[capacity];
+        tier = new byte[capacity];
+        lastStep = new int[capacity];
+        freeSlots = new int[capacity];
+        dirty = new long[(capacity + 63) >>> 6];
+    }
+
+    public int create(float x, float y) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (size == capacity) {
+                grow(capacity * 2);
+            }
+            slot = size++;
+        }
+
+        positionX[slot] = x;
+        positionY[slot] = y;
+        nextPositionX[slot] = x;
+        nextPositionY[slot] = y;
+        velocityX[slot] = DEFAULT_VELOCITY;
+        velocityY[slot] = DEFAULT_VELOCITY;
+        frameTime[slot] = 0f;
+        tier[slot] = AreaOfInterest.TIER_ACTIVE;
+        lastStep[slot] = AreaOfInterest.NEVER;
+        direction[slot] = DIRECTION_LEFT;
+        state[slot] = STATE_IDLE;
+        alive[slot] = true;
+        liveCount++;
+        markDirty(slot);
+
+        return slot;
+    }
+
+    public void destroy(int slot) {
+        if (!alive[slot]) {
+            return;
+        }
+
+        alive[slot] = false;
+        state[slot] = STATE_IDLE;
+        // Ids handed out for this slot go stale
+        generation[slot] = (generation[slot] + 1) & ID_GENERATION_MASK;
+        freeSlots[freeCount++] = slot;
+        liveCount--;
+        markDirty(slot);
+    }
+
+    // Advances animation time and computes the next position of every walking entity
+    public void update(float delta) {
+        update(0, size, delta);
+    }
+
+    // Same as update(float) for the slot range [from, to), so the range can be split between workers
+    public void update(int from, int to, float delta) {
+        for (int i = from; i < to; i++) {
+            if (!alive[i]) {
+                continue;
+            }
+
+            frameTime[i] = (frameTime[i] + delta) % FRAME_TIME_WRAP;
+
+            // Idle entities get a zero step, which keeps the loop free of per-entity branching
+            float step = state[i] == STATE_WALKING ? delta : 0f;
+            int d = direction[i];
+            nextPositionX[i] = positionX[i] + DIRECTION_X[d] * velocityX[i] * step;
+            nextPositionY[i] = positionY[i] + DIRECTION_Y[d] * velocityY[i] * step;
+        }
+    }
+
+    public void updateEntity(int slot, float delta) {
+        update(slot, slot + 1, delta);
+    }
+
+    public void calculateNextPosition(int slot, int movementDirection, float delta) {
+        nextPositionX[slot] = positionX[slot] + DIRECTION_X[movementDirection] * velocityX[slot] * delta;
+        nextPositionY[slot] = positionY[slot] + DIRECTION_Y[movementDirection] * velocityY[slot] * delta;
+    }
+
+    public void commitNextPosition(int slot) {
+        setPosition(slot, nextPositionX[slot], nextPositionY[slot]);
+    }
+
+    public void setPosition(int slot, float x, float y) {
+        if (positionX[slot] != x || positionY[slot] != y) {
+            positionX[slot] = x;
+            positionY[slot] = y;
+            markDirty(slot);
+        }
+    }
+
+    public void setNextPosition(int slot, float x, float y) {
+        nextPositionX[slot] = x;
+        nextPositionY[slot] = y;
+    }
+
+    public void setVelocity(int slot, float x, float y) {
+        velocityX[slot] = x;
+        velocityY[slot] = y;
+    }
+
+    public void setDirection(int slot, int movementDirection) {
+        if (direction[slot] != movementDirection) {
+            direction[slot] = movementDirection;
+            markDirty(slot);
+        }
+    }
+
+    public void setState(int slot, int entityState) {
+        if (state[slot] != entityState) {
+            state[slot] = entityState;
+            markDirty(slot);
+        }
+    }
+
+    // Replaces the whole world with count saved slots, e.g. when loading a game; marks every slot clean
+    public void restore(int count, boolean[] savedAlive, float[] savedX, float[] savedY, int[] savedDirection, int[] savedState, float[] savedFrameTime) {
+        if (count > capacity) {
+            grow(Math.max(count, capacity * 2));
+        }
+
+        for (int i = 0; i < size; i++) {
+            alive[i] = false;
+        }
+
+        size = count;
+        liveCount = 0;
+        freeCount = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            positionX[i] = savedX[i];
+            positionY[i] = savedY[i];
+            nextPositionX[i] = savedX[i];
+            nextPositionY[i] = savedY[i];
+            velocityX[i] = DEFAULT_VELOCITY;
+            velocityY[i] = DEFAULT_VELOCITY;
+            frameTime[i] = savedFrameTime[i];
+            tier[i] = AreaOfInterest.TIER_ACTIVE;
+            lastStep[i] = AreaOfInterest.NEVER;
+            direction[i] = savedDirection[i];
+            state[i] = savedState[i];
+            alive[i] = savedAlive[i];
+
+            if (alive[i]) {
+                liveCount++;
+            } else {
+                // Pushed from the top down so the lowest free slot is reused first, like a fresh world
+                freeSlots[freeCount++] = i;
+            }
+        }
+
+        clearDirty();
+    }
+
+    public void markDirty(int slot) {
+        dirty[slot >>> 6] |= 1L << slot;
+    }
+
+    public void markAllDirty() {
+        for (int i = 0; i < size; i++) {
+            markDirty(i);
+        }
+    }
+
+    public void clearDirty(int slot) {
+        dirty[slot >>> 6] &= ~(1L << slot);
+    }
+
+    public void clearDirty() {
+        for (int i = 0; i < dirty.length; i++) {
+            dirty[i] = 0L;
+        }
+    }
+
+    // First dirty slot at or after from, or -1
+    public int nextDirty(int from) {
+        if (from >= size) {
+            return -1;
+        }
+
+        int word = from >>> 6;
+        long bits = dirty[word] & (-1L << from);
+        while (true) {
+            if (bits != 0) {
+                int slot = (word << 6) + Long.numberOfTrailingZeros(bits);
+                return slot < size ? slot : -1;
+            }
+            if (++word >= dirty.length) {
+                return -1;
+            }
+            bits = dirty[word];
+        }
+    }
+
+    public float getX(int slot) {
+        return positionX[slot];
+    }
+
+    public float getY(int slot) {
+        return positionY[slot];
+    }
+
+    public float getNextX(int slot) {
+        return nextPositionX[slot];
+    }
+
+    public float getNextY(int slot) {
+        return nextPositionY[slot];
+    }
+
+    public float getFrameTime(int slot) {
+        return frameTime[slot];
+    }
+
+    public int getDirection(int slot) {
+        return direction[slot];
+    }
+
+    public int getState(int slot) {
+        return state[slot];
+    }
+
+    public boolean isAlive(int slot) {
+        return slot >= 0 && slot < size && alive[slot];
+    }
+
+    // Compact id of the entity in the slot, valid until the slot is destroyed
+    public int getId(int slot) {
+        return generation[slot] << ID_SLOT_BITS | slot;
+    }
+
+    // Slot of the entity with the id, -1 once that entity is gone
+    public int getSlot(int id) {
+        int slot = id & ID_SLOT_MASK;
+        if (id < 0 || slot >= size || !alive[slot] || generation[slot] != id >>> ID_SLOT_BITS) {
+            return -1;
+        }
+        return slot;
+    }
+
+    // Upper bound for slot indices, loops over the arrays should run to here and skip dead slots
+    public int size() {
+        return size;
+    }
+
+    public int getLiveCount() {
+        return liveCount;
+    }
+
+    public float[] getPositionX() {
+        return positionX;
+    }
+
+    public float[] getPositionY() {
+        return positionY;
+    }
+
+    public float[] getNextPositionX() {
+        return nextPositionX;
+    }
+
+    public float[] getNextPositionY() {
+        return nextPositionY;
+    }
+
+    public float[] getVelocityX() {
+        return velocityX;
+    }
+
+    public float[] getVelocityY() {
+        return velocityY;
+    }
+
+    public byte[] getTiers() {
+        return tier;
+    }
+
+    public int[] getLastSteps() {
+        return lastStep;
+    }
+
+    public int[] getDirections() {
+        return direction;
+    }
+
+    public int[] getStates() {
+        return state;
+    }
+
+    public boolean[] getAlive() {
+        return alive;
+    }
+
+    private void grow(int newCapacity) {
+        positionX = Arrays.copyOf(positionX, newCapacity);
+        positionY = Arrays.copyOf(positionY, newCapacity);
+        nextPositionX = Arrays.copyOf(nextPositionX, newCapacity);
+        nextPositionY = Arrays.copyOf(nextPositionY, newCapacity);
+        velocityX = Arrays.copyOf(velocityX, newCapacity);
+        velocityY = Arrays.copyOf(velocityY, newCapacity);
+        frameTime = Arrays.copyOf(frameTime, newCapacity);
+        direction = Arrays.copyOf(direction, newCapacity);
+        state = Arrays.copyOf(state, newCapacity);
+        alive = Arrays.copyOf(alive, newCapacity);
+        generation = Arrays.copyOf(generation, newCapacity);
+        tier = Arrays.copyOf(tier, newCapacity);
+        lastStep = Arrays.copyOf(lastStep, newCapacity);
+        freeSlots = Arrays.copyOf(freeSlots, newCapacity);
+        dirty = Arrays.copyOf(dirty, (newCapacity + 63) >>> 6);
+        capacity = newCapacity;
+    }
+}
@@ -0,0 +1,93 @@
+package com.packtpub.libgdx.bludbourne;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded single producer, single consumer queue of input events. Events are stored as primitive
+ * ints in a ring buffer allocated up front, so neither side allocates or locks. The input callbacks
+ * offer events and the simulation step drains them in a batch.
+ */
+public class InputRingBuffer {
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    public static final int KEY_DOWN = 1;
+    public static final int KEY_UP = 2;
+    public static final int TOUCH_DOWN = 3;
+    public static final int TOUCH_UP = 4;
+
+    // Every event is a type followed by up to three arguments
+    private static final int EVENT_SIZE = 4;
+
+    public interface Handler {
+        void handleEvent(int type, int a, int b, int c);
+    }
+
+    private final int[] events;
+    private final int mask;
+
+    // Free running counters, the slot is the counter masked by the capacity
+    private final AtomicInteger head = new AtomicInteger();
+    private final AtomicInteger tail = new AtomicInteger();
+    private int dropped;
+
+    public InputRingBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public InputRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        events = new int[size * EVENT_SIZE];
+        mask = size - 1;
+    }
+
+    // Producer side; returns false and drops the event when the consumer has fallen a full buffer behind
+    public boolean offer(int type, int a, int b, int c) {
+        int t = tail.get();
+        if (t - head.get() > mask) {
+            dropped++;
+            return false;
+        }
+
+        int offset = (t & mask) * EVENT_SIZE;
+        events[offset] = type;
+        events[offset + 1] = a;
+        events[offset + 2] = b;
+        events[offset + 3] = c;
+
+        // Publishes the event written above to the consumer
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    // Consumer side; hands every queued event to the handler in order and returns how many there were
+    public int drain(Handler handler) {
+        int h = head.get();
+        int t = tail.get();
+
+        for (int i = h; i != t; i++) {
+            int offset = (i & mask) * EVENT_SIZE;
+            handler.handleEvent(events[offset], events[offset + 1], events[offset + 2], events[offset + 3]);
+        }
+
+        head.lazySet(t);
+        return t - h;
+    }
+
+    public void clear() {
+        head.lazySet(tail.get());
+    }
+
+    public int size() {
+        return tail.get() - head.get();
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    // Written by the producer only
+    public int getDroppedCount() {
+        return dropped;
+    }
+}
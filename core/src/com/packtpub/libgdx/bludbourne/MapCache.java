@@ -0,0 +1,90 @@
+package com.packtpub.libgdx.bludbourne;
+
+import com.packtpub.libgdx.bludbourne.logging.Log;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU set of maps kept resident in the asset manager besides the current one. Every entry
+ * owns exactly one asset manager reference to its map, which is released when it is evicted, even
+ * if the map is still being prefetched.
+ */
+public class MapCache {
+
+    private static final String TAG = MapCache.class.getSimpleName();
+
+    public static final int DEFAULT_CAPACITY = 2;
+
+    private final int capacity;
+    private final LinkedHashMap<String, Boolean> entries;
+
+    public MapCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MapCache(int capacity) {
+        this.capacity = capacity;
+        // Access ordered, so the eldest entry is the least recently used map
+        this.entries = new LinkedHashMap<String, Boolean>(capacity + 1, 1f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                if (size() > MapCache.this.capacity) {
+                    Log.debug(TAG, "Evicting {}", eldest.getKey());
+                    Utility.releaseMapAsset(eldest.getKey());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public boolean contains(String mapFullPath) {
+        return entries.containsKey(mapFullPath);
+    }
+
+    // Marks the map as recently used
+    public void touch(String mapFullPath) {
+        entries.get(mapFullPath);
+    }
+
+    // Starts streaming the map in the background if it is not cached yet
+    public void prefetch(String mapFullPath) {
+        if (entries.containsKey(mapFullPath)) {
+            touch(mapFullPath);
+            return;
+        }
+
+        Log.debug(TAG, "Prefetching {}", mapFullPath);
+        if (Utility.loadMapAssetAsync(mapFullPath, null)) {
+            entries.put(mapFullPath, Boolean.TRUE);
+        }
+    }
+
+    // Takes over a reference the caller already holds, e.g. the map being left
+    public void adopt(String mapFullPath) {
+        if (entries.containsKey(mapFullPath)) {
+            // We already own one, drop the extra
+            Utility.unloadMapAsset(mapFullPath);
+            touch(mapFullPath);
+            return;
+        }
+
+        entries.put(mapFullPath, Boolean.TRUE);
+    }
+
+    public void clear() {
+        for (String mapFullPath : entries.keySet()) {
+            Utility.releaseMapAsset(mapFullPath);
+        }
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
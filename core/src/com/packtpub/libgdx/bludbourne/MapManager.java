@@ -1,18 +1,21 @@
 package com.packtpub.libgdx.bludbourne;
 
-import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.maps.MapLayer;
-import com.badlogic.gdx.maps.MapObject;
-import com.badlogic.gdx.maps.objects.RectangleMapObject;
 import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector2;
+import com.packtpub.libgdx.bludbourne.logging.Log;
+import com.packtpub.libgdx.bludbourne.navigation.NavigationGrid;
+import com.packtpub.libgdx.bludbourne.navigation.PathfindingService;
+import com.packtpub.libgdx.bludbourne.world.ResidentMap;
+import com.packtpub.libgdx.bludbourne.world.WorldSimulation;
 
 import java.util.Hashtable;
 import java.util.Map;
 import java.util.Objects;
 
 import static java.util.Objects.isNull;
-import static jdk.internal.joptsimple.internal.Strings.isNullOrEmpty;
+import static com.packtpub.libgdx.bludbourne.Utility.isNullOrEmpty;
 
 public class MapManager {
 
@@ -24,31 +27,51 @@ public class MapManager {
 
     // Map names
     private final static String TOP_WORLD = "TOP_WORLD";
-    private final static String TOWN = "TOWN";
+    public final static String TOWN = "TOWN";
     private final static String CASTLE_OF_DOOM = "CASTLE_OF_DOOM";
 
     // Map layers
-    private final static String MAP_COLLISION_LAYER = "MAP_COLLISION_LAYER";
-    private final static String MAP_SPAWNS_LAYER = "MAP_SPAWNS_LAYER";
-    private final static String MAP_PORTAL_LAYER = "MAP_PORTAL_LAYER";
+    public final static String MAP_COLLISION_LAYER = "MAP_COLLISION_LAYER";
+    public final static String MAP_SPAWNS_LAYER = "MAP_SPAWNS_LAYER";
+    public final static String MAP_PORTAL_LAYER = "MAP_PORTAL_LAYER";
 
-    private final static String PLAYER_START = "PLAYER_START";
+    public final static String PLAYER_START = "PLAYER_START";
 
-    private Vector2 playerStartPositionRect;
     private Vector2 closestPlayerStartPosition;
     private Vector2 convertedUnits;
 
     private Vector2 playerStart;
+    private Vector2 playerStartUnitScaled;
     private TiledMap currentMap;
     private String currentMapName;
+    private String pendingMapName;
     private MapLayer collisionLayer;
     private MapLayer portalLayer;
     private MapLayer spawnsLayer;
+    private SpawnIndex spawnIndex;
+    private CollisionGrid collisionGrid;
+
+    // When set, every map's indices and entities live in its resident map, see setWorldSimulation()
+    private WorldSimulation worldSimulation;
+    private EntityWorld world;
+
+    // Collision layers never change, so each map's navigation grid and path cache is built once
+    private Map<String, PathfindingService> pathfinders;
+    private PathfindingService pathfinder;
+
+    // Maps we recently left or are about to enter through a portal
+    private MapCache mapCache;
+    private float portalPrefetchDistance;
+    private PortalIndex portalIndex;
 
     public final static float UNIT_SCALE = 1/16f;
 
+    // Start warming a portal's target map once the player is this close to it, in world units
+    public final static float DEFAULT_PORTAL_PREFETCH_DISTANCE = 4f;
+
     public MapManager() {
         playerStart = new Vector2(0, 0);
+        playerStartUnitScaled = new Vector2(0, 0);
 
         mapTable = new Hashtable<>();
         mapTable.put(TOP_WORLD, "maps/topworld.tmx");
@@ -60,50 +83,205 @@ public class MapManager {
         playerStartLocationTable.put(TOWN, playerStart.cpy());
         playerStartLocationTable.put(CASTLE_OF_DOOM, playerStart.cpy());
 
-        playerStartPositionRect = new Vector2(0, 0);
         closestPlayerStartPosition = new Vector2(0, 0);
         convertedUnits = new Vector2(0, 0);
 
+        collisionGrid = new CollisionGrid();
+        spawnIndex = new SpawnIndex();
+        portalIndex = new PortalIndex();
+        pathfinders = new Hashtable<>();
+
+        mapCache = new MapCache();
+        portalPrefetchDistance = DEFAULT_PORTAL_PREFETCH_DISTANCE / UNIT_SCALE;
+
         currentMap = null;
     }
 
     public void loadMap(String mapName) {
-        playerStart.set(0, 0);
+        String mapFullPath = mapTable.get(mapName);
+
+        if (isNullOrEmpty(mapFullPath)) {
+            Log.debug(TAG, "Path {} is invalid", mapFullPath);
+            return;
+        }
+
+        Utility.loadMapAsset(mapFullPath);
 
+        if (Utility.isMapAssetLoaded(mapFullPath)) {
+            setCurrentMap(mapName, Utility.getMapAsset(mapFullPath));
+        } else {
+            Log.debug(TAG, "Map not loaded");
+        }
+    }
+
+    // Queues the map and keeps the current one until it is ready, see isLoadingMap()
+    public void loadMapAsync(final String mapName) {
         String mapFullPath = mapTable.get(mapName);
 
         if (isNullOrEmpty(mapFullPath)) {
-            Gdx.app.debug(TAG, "Path " + mapFullPath + " is invalid");
+            Log.debug(TAG, "Path {} is invalid", mapFullPath);
             return;
         }
 
-        if (!isNull(currentMap)) {
-            currentMap.dispose();
+        pendingMapName = mapName;
+        if (mapCache.contains(mapFullPath)) {
+            mapCache.touch(mapFullPath);
         }
 
-        Utility.loadMapAsset(mapFullPath);
+        Utility.loadMapAssetAsync(mapFullPath, new Utility.AssetLoadedListener() {
+            @Override
+            public void assetLoaded(String fileNamePath) {
+                if (mapName.equals(pendingMapName)) {
+                    pendingMapName = null;
+                    setCurrentMap(mapName, Utility.getMapAsset(fileNamePath));
+                } else {
+                    // Superseded by a later request before it finished
+                    Utility.unloadMapAsset(fileNamePath);
+                }
+            }
+        });
+    }
 
-        if (Utility.isAssetLoaded(mapFullPath)) {
-            currentMap = Utility.getMapAsset(mapFullPath);
-            currentMapName = mapName;
-        } else {
-            Gdx.app.debug(TAG, "Map not loaded");
+    // Warms the target of every portal within the prefetch distance of the player, call once per frame
+    public void updatePortalPrefetch(Vector2 positionUnitScaled) {
+        float x = positionUnitScaled.x / UNIT_SCALE;
+        float y = positionUnitScaled.y / UNIT_SCALE;
+
+        for (int i = 0; i < portalIndex.getCount(); i++) {
+            String target = portalIndex.getTarget(i);
+            if (isNull(target) || target.equals(currentMapName) || target.equals(pendingMapName)) {
+                continue;
+            }
+
+            if (portalIndex.distanceSquared(i, x, y) <= portalPrefetchDistance * portalPrefetchDistance) {
+                String mapFullPath = mapTable.get(target);
+                if (!isNullOrEmpty(mapFullPath)) {
+                    mapCache.prefetch(mapFullPath);
+                }
+            }
+        }
+    }
+
+    // Name of the map behind the first portal the box overlaps, null if there is none or it has no name
+    public String getPortalTarget(Rectangle boundingBox) {
+        int portal = portalIndex.find(boundingBox.x, boundingBox.y, boundingBox.width, boundingBox.height);
+        return portal < 0 ? null : portalIndex.getTarget(portal);
+    }
+
+    // Picks up a map AssetReloader loaded again, returns true if it replaced the current map
+    public boolean swapReloadedMap(String mapFullPath) {
+        String mapName = getMapName(mapFullPath);
+        if (!isNull(mapName)) {
+            // The navigation grid was built from the old collision layer
+            pathfinders.remove(mapName);
+        }
+
+        // Other maps are looked up by path when they are entered, resident ones need their indices now
+        if (isNull(currentMap) || !mapFullPath.equals(mapTable.get(currentMapName))) {
+            TiledMap map = Utility.getMapAsset(mapFullPath);
+            if (!isNull(worldSimulation) && !isNull(mapName) && !isNull(map)) {
+                worldSimulation.mapReloaded(mapName, map);
+            }
+            return false;
+        }
+
+        TiledMap map = Utility.getMapAsset(mapFullPath);
+        if (isNull(map)) {
+            return false;
+        }
+
+        // The old map is no longer in the asset manager, it must not go to the cache
+        currentMap = null;
+        setCurrentMap(currentMapName, map);
+        Log.info(TAG, "Reloaded {}", mapFullPath);
+        return true;
+    }
+
+    // Hands every map to the simulation, whose resident maps then own the maps' entities and indices;
+    // call before the first map is loaded. The maps are queued here and become resident as they come in,
+    // see Utility.updateAssetLoading(), the one the player enters first already when it becomes current
+    public void setWorldSimulation(final WorldSimulation worldSimulation) {
+        this.worldSimulation = worldSimulation;
+        if (isNull(worldSimulation)) {
             return;
         }
 
+        for (Map.Entry<String, String> entry : mapTable.entrySet()) {
+            final String mapName = entry.getKey();
+            Utility.loadMapAssetAsync(entry.getValue(), new Utility.AssetLoadedListener() {
+                @Override
+                public void assetLoaded(String fileNamePath) {
+                    worldSimulation.admit(mapName, Utility.getMapAsset(fileNamePath));
+
+                    // The resident map needs nothing more from it, the cache keeps it warm within its capacity
+                    if (mapName.equals(currentMapName)) {
+                        Utility.unloadMapAsset(fileNamePath);
+                    } else {
+                        mapCache.adopt(fileNamePath);
+                    }
+                }
+            });
+        }
+    }
+
+    public void setPortalPrefetchDistance(float distanceUnitScaled) {
+        portalPrefetchDistance = distanceUnitScaled / UNIT_SCALE;
+    }
+
+    public MapCache getMapCache() {
+        return mapCache;
+    }
+
+    public boolean isLoadingMap() {
+        return !isNull(pendingMapName);
+    }
+
+    private void setCurrentMap(String mapName, TiledMap map) {
+        if (isNull(map)) {
+            Log.debug(TAG, "Map not loaded");
+            return;
+        }
+
+        // Keep the map we are leaving warm, the cache takes over our reference to it
+        if (!isNull(currentMap)) {
+            mapCache.adopt(mapTable.get(currentMapName));
+        }
+
+        playerStart.set(0, 0);
+        currentMap = map;
+        currentMapName = mapName;
+
         collisionLayer = Objects.requireNonNull(currentMap).getLayers().get(MAP_COLLISION_LAYER);
         if (isNull(collisionLayer)) {
-            Gdx.app.debug(TAG, "No collision layer!");
+            Log.debug(TAG, "No collision layer!");
         }
-
-        portalLayer = Objects.requireNonNull(currentMap).getLayers().get(MAP_PORTAL_LAYER);
+        portalLayer = currentMap.getLayers().get(MAP_PORTAL_LAYER);
         if (isNull(portalLayer)) {
-            Gdx.app.debug(TAG, "No portal layer!");
+            Log.debug(TAG, "No portal layer!");
+        }
+        spawnsLayer = currentMap.getLayers().get(MAP_SPAWNS_LAYER);
+
+        if (isNull(worldSimulation)) {
+            collisionGrid.build(collisionLayer);
+            portalIndex.build(portalLayer);
+            spawnIndex.build(spawnsLayer);
+        } else {
+            // Same indices and entities the map keeps ticking with in the background
+            ResidentMap residentMap = worldSimulation.acquire(mapName, map);
+            collisionGrid = residentMap.getCollisionGrid();
+            portalIndex = residentMap.getPortalIndex();
+            spawnIndex = residentMap.getSpawnIndex();
+            world = residentMap.getWorld();
+        }
+
+        pathfinder = pathfinders.get(mapName);
+        if (isNull(pathfinder)) {
+            pathfinder = new PathfindingService(buildNavigationGrid());
+            pathfinders.put(mapName, pathfinder);
         }
 
-        spawnsLayer = Objects.requireNonNull(currentMap).getLayers().get(MAP_SPAWNS_LAYER);
         if (isNull(spawnsLayer)) {
-            Gdx.app.debug(TAG, "No spawn layer!");
+            Log.debug(TAG, "No spawn layer!");
         } else {
             Vector2 start = playerStartLocationTable.get(currentMapName);
             if (start.isZero()) {
@@ -114,7 +292,17 @@ public class MapManager {
             playerStart.set(start.x, start.y);
         }
 
-        Gdx.app.debug(TAG, "Player Start: (" + playerStart.x + "," + playerStart.y + ")");
+        Log.debug(TAG, "Player Start: ({},{})", playerStart.x, playerStart.y);
+    }
+
+    private NavigationGrid buildNavigationGrid() {
+        NavigationGrid navigationGrid = new NavigationGrid();
+        navigationGrid.build(collisionGrid,
+                currentMap.getProperties().get("width", 0, Integer.class),
+                currentMap.getProperties().get("height", 0, Integer.class),
+                currentMap.getProperties().get("tilewidth", 16, Integer.class),
+                currentMap.getProperties().get("tileheight", 16, Integer.class));
+        return navigationGrid;
     }
 
     public TiledMap getCurrentMap() {
@@ -126,18 +314,84 @@ public class MapManager {
         return currentMap;
     }
 
+    // Entities of the current map, the player's included; null without a WorldSimulation
+    public EntityWorld getWorld() {
+        return world;
+    }
+
     public MapLayer getCollisionLayer() {
         return collisionLayer;
     }
 
+    public CollisionGrid getCollisionGrid() {
+        return collisionGrid;
+    }
+
+    public SpawnIndex getSpawnIndex() {
+        return spawnIndex;
+    }
+
+    public PortalIndex getPortalIndex() {
+        return portalIndex;
+    }
+
+    public PathfindingService getPathfinder() {
+        return pathfinder;
+    }
+
+    public NavigationGrid getNavigationGrid() {
+        return isNull(pathfinder) ? null : pathfinder.getGrid();
+    }
+
+    public boolean isCollision(Rectangle boundingBox) {
+        return collisionGrid.isCollision(boundingBox);
+    }
+
+    public String getCurrentMapName() {
+        return currentMapName;
+    }
+
+    // Names of every map, in no particular order
+    public String[] getMapNames() {
+        return mapTable.keySet().toArray(new String[mapTable.size()]);
+    }
+
+    public String getMapPath(String mapName) {
+        return mapTable.get(mapName);
+    }
+
+    // Null for paths that are not in the map table
+    private String getMapName(String mapFullPath) {
+        for (Map.Entry<String, String> entry : mapTable.entrySet()) {
+            if (entry.getValue().equals(mapFullPath)) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    // The live start vector of the map, (0, 0) until the player has been there
+    public Vector2 getPlayerStartLocation(String mapName) {
+        return playerStartLocationTable.get(mapName);
+    }
+
+    public void setPlayerStartLocation(String mapName, float x, float y) {
+        Vector2 start = playerStartLocationTable.get(mapName);
+        if (isNull(start)) {
+            Log.debug(TAG, "No map named {}", mapName);
+            return;
+        }
+
+        start.set(x, y);
+    }
+
     public MapLayer getPortalLayer() {
         return portalLayer;
     }
 
+    // Reused between calls, copy it to keep the value
     public Vector2 getPlayerStartUnitScaled() {
-        Vector2 playerStart = this.playerStart.cpy();
-        playerStart.set(this.playerStart.x * UNIT_SCALE, this.playerStart.y * UNIT_SCALE);
-        return playerStart;
+        return playerStartUnitScaled.set(playerStart.x * UNIT_SCALE, playerStart.y * UNIT_SCALE);
     }
 
     public void setClosestStartPositionFromScaledUnits(Vector2 position) {
@@ -146,31 +400,15 @@ public class MapManager {
     }
 
     private void setClosestPlayerStartPosition(final Vector2 position) {
-        Gdx.app.debug(TAG, "setClosestStartPosition INPUT: (" + position.x + "," + position.y + ") " + currentMapName);
+        Log.debug(TAG, "setClosestStartPosition INPUT: ({},{}) {}", position.x, position.y, currentMapName);
 
-        // Get last known position on this map
-        playerStartPositionRect.set(0, 0);
+        // Get last known position on this map, (0, 0) when the map has no player start
         closestPlayerStartPosition.set(0, 0);
-        float shortestDistance = 0f;
+        spawnIndex.findNearest(PLAYER_START, position.x, position.y, closestPlayerStartPosition);
 
-        // Go through all player start positions and choose the one closest to the last known position
-        for (MapObject mapObject : spawnsLayer.getObjects()) {
-            if (mapObject.getName().equalsIgnoreCase(PLAYER_START)) {
-                // this sets playerStartPositionRect with the mapObject's rectangle coordinates and returns it in the same function
-               ((RectangleMapObject)mapObject).getRectangle().getPosition(playerStartPositionRect);
-                float distance = position.dst(playerStartPositionRect);
-
-                Gdx.app.debug(TAG, "distance: " + distance + " for " + currentMapName);
-
-                if ((distance < shortestDistance) || distance == 0 ) {
-                    closestPlayerStartPosition.set(playerStartPositionRect);
-                    shortestDistance = distance;
-
-                    Gdx.app.debug(TAG, "closest START is: (" + closestPlayerStartPosition.x + "," + closestPlayerStartPosition.y + ") " +  currentMapName);
-                }
-            }
-        }
+        Log.debug(TAG, "closest START is: ({},{}) {}", closestPlayerStartPosition.x, closestPlayerStartPosition.y, currentMapName);
 
-        playerStartLocationTable.put(currentMapName, closestPlayerStartPosition.cpy());
+        // Every map owns its start vector, update it in place
+        playerStartLocationTable.get(currentMapName).set(closestPlayerStartPosition);
     }
 }
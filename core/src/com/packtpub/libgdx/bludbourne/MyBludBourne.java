@@ -1,20 +1,67 @@
 package com.packtpub.libgdx.bludbourne;
 
 import com.badlogic.gdx.Game;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Screen;
+import com.packtpub.libgdx.bludbourne.boot.AssetManifest;
+import com.packtpub.libgdx.bludbourne.boot.BootLoader;
+import com.packtpub.libgdx.bludbourne.logging.Log;
+import com.packtpub.libgdx.bludbourne.screens.BootScreen;
 import com.packtpub.libgdx.bludbourne.screens.MainGameScreen;
 
+import static java.util.Objects.isNull;
+
 public class MyBludBourne extends Game {
+	private static final String TAG = MyBludBourne.class.getSimpleName();
+
+	// System.nanoTime() when the launcher started, to measure the time to the first playable frame
+	private final long launchNanos;
+	private boolean interactive;
+	// Until the assets it warmed up are all loaded
+	private BootLoader bootLoader;
 
-	public static final MainGameScreen mainGameScreen = new MainGameScreen();
+	public MyBludBourne() {
+		this(System.nanoTime());
+	}
+
+	public MyBludBourne(long launchNanos) {
+		this.launchNanos = launchNanos;
+	}
 
 	@Override
 	public void create () {
-
+		if (BootLoader.isEnabled()) {
+			bootLoader = new BootLoader(Gdx.files.internal(AssetManifest.PATH));
+			setScreen(new BootScreen(this, bootLoader));
+		} else {
+			// Every asset is loaded the first time it is needed
+			setScreen(new MainGameScreen());
+		}
 	}
 
+	@Override
+	public void render () {
+		// The boot screen swaps the game in during its own frame, count from the game's first
+		Screen rendered = getScreen();
+		super.render();
+
+		if (!interactive && rendered instanceof MainGameScreen) {
+			interactive = true;
+			Log.info(TAG, "First interactive frame {} ms after launch", (System.nanoTime() - launchNanos) / 1000000L);
+		}
+		if (interactive && !isNull(bootLoader) && bootLoader.releaseWhenIdle()) {
+			bootLoader = null;
+		}
+	}
 
 	@Override
 	public void dispose () {
-
+		if (!isNull(bootLoader)) {
+			bootLoader.dispose();
+		}
+		if (!isNull(getScreen())) {
+			getScreen().dispose();
+		}
+		Utility.assetManager.dispose();
 	}
 }
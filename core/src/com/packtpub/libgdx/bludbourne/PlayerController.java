@@ -1,12 +1,18 @@
 package com.packtpub.libgdx.bludbourne;
 
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input;
 import com.badlogic.gdx.InputProcessor;
 import com.badlogic.gdx.math.Vector3;
 
-import java.util.HashMap;
-import java.util.Map;
+import static java.util.Objects.isNull;
 
-public class PlayerController implements InputProcessor {
+/**
+ * Turns input into the player's state and direction. The callbacks only queue events; the queue is
+ * drained once per simulation step, so input is applied within one step of arriving whatever the
+ * frame rate. Movement itself is done by the world while the player is walking.
+ */
+public class PlayerController implements InputProcessor, SimulationScheduler.StepListener, InputRingBuffer.Handler {
 
     private static final String TAG = PlayerController.class.getSimpleName();
 
@@ -18,40 +24,96 @@ public class PlayerController implements InputProcessor {
         SELECT, DO_ACTION
     }
 
-    private static Map<Keys, Boolean> keys = new HashMap<>();
-    private static Map<Mouse, Boolean> mouseButtons = new HashMap<>();
+    private final InputRingBuffer events;
 
-    // Initialize the inputs
-
-    static {
-        keys.put(Keys.LEFT, false);
-        keys.put(Keys.RIGHT, false);
-        keys.put(Keys.UP, false);
-        keys.put(Keys.DOWN, false);
-        keys.put(Keys.QUIT, false);
-    }
-
-    static {
-        mouseButtons.put(Mouse.SELECT, false);
-        mouseButtons.put(Mouse.DO_ACTION, false);
-    }
+    // One bit per Keys and Mouse ordinal, owned by the simulation step
+    private int keyState;
+    private int mouseState;
 
     private Entity player;
     private Vector3 lastMouseCoordinates;
 
     public PlayerController(Entity player) {
         lastMouseCoordinates = new Vector3();
+        events = new InputRingBuffer();
         this.player = player;
     }
 
+    @Override
+    public void onStep(float step) {
+        update(step);
+    }
+
+    public void update(float delta) {
+        events.drain(this);
+        processInput();
+    }
+
+    @Override
+    public void handleEvent(int type, int a, int b, int c) {
+        switch (type) {
+            case InputRingBuffer.KEY_DOWN:
+                keyState |= 1 << a;
+                break;
+            case InputRingBuffer.KEY_UP:
+                keyState &= ~(1 << a);
+                break;
+            case InputRingBuffer.TOUCH_DOWN:
+                lastMouseCoordinates.set(a, b, 0);
+                mouseState |= 1 << c;
+                break;
+            case InputRingBuffer.TOUCH_UP:
+                lastMouseCoordinates.set(a, b, 0);
+                mouseState &= ~(1 << c);
+                break;
+            default:
+                break;
+        }
+    }
+
+    public boolean isPressed(Keys key) {
+        return (keyState & (1 << key.ordinal())) != 0;
+    }
+
+    public boolean isPressed(Mouse button) {
+        return (mouseState & (1 << button.ordinal())) != 0;
+    }
+
+    // Pressed keys and buttons as bits of the Keys and Mouse ordinals
+    public int getKeyState() {
+        return keyState;
+    }
+
+    public int getMouseState() {
+        return mouseState;
+    }
+
+    // Replaces the pressed keys and buttons, e.g. from a replay; takes effect with the next step
+    public void setInputState(int keyState, int mouseState) {
+        this.keyState = keyState;
+        this.mouseState = mouseState;
+    }
+
+    public Vector3 getLastMouseCoordinates() {
+        return lastMouseCoordinates;
+    }
+
+    public void releaseAll() {
+        events.clear();
+        keyState = 0;
+        mouseState = 0;
+    }
+
     @Override
     public boolean keyDown(int keycode) {
-        return false;
+        Keys key = toKey(keycode);
+        return !isNull(key) && events.offer(InputRingBuffer.KEY_DOWN, key.ordinal(), 0, 0);
     }
 
     @Override
     public boolean keyUp(int keycode) {
-        return false;
+        Keys key = toKey(keycode);
+        return !isNull(key) && events.offer(InputRingBuffer.KEY_UP, key.ordinal(), 0, 0);
     }
 
     @Override
@@ -61,12 +123,14 @@ public class PlayerController implements InputProcessor {
 
     @Override
     public boolean touchDown(int screenX, int screenY, int pointer, int button) {
-        return false;
+        Mouse mouse = toMouse(button);
+        return !isNull(mouse) && events.offer(InputRingBuffer.TOUCH_DOWN, screenX, screenY, mouse.ordinal());
     }
 
     @Override
     public boolean touchUp(int screenX, int screenY, int pointer, int button) {
-        return false;
+        Mouse mouse = toMouse(button);
+        return !isNull(mouse) && events.offer(InputRingBuffer.TOUCH_UP, screenX, screenY, mouse.ordinal());
     }
 
     @Override
@@ -83,4 +147,61 @@ public class PlayerController implements InputProcessor {
     public boolean scrolled(int amount) {
         return false;
     }
+
+    private void processInput() {
+        if (isPressed(Keys.QUIT)) {
+            Gdx.app.exit();
+            return;
+        }
+
+        // The first pressed key wins when several are held
+        if (isPressed(Keys.LEFT)) {
+            walk(Entity.Direction.LEFT);
+        } else if (isPressed(Keys.RIGHT)) {
+            walk(Entity.Direction.RIGHT);
+        } else if (isPressed(Keys.UP)) {
+            walk(Entity.Direction.UP);
+        } else if (isPressed(Keys.DOWN)) {
+            walk(Entity.Direction.DOWN);
+        } else {
+            player.setState(Entity.State.IDLE);
+        }
+    }
+
+    private void walk(Entity.Direction direction) {
+        player.setState(Entity.State.WALKING);
+        player.setDirection(direction);
+    }
+
+    private static Keys toKey(int keycode) {
+        switch (keycode) {
+            case Input.Keys.LEFT:
+            case Input.Keys.A:
+                return Keys.LEFT;
+            case Input.Keys.RIGHT:
+            case Input.Keys.D:
+                return Keys.RIGHT;
+            case Input.Keys.UP:
+            case Input.Keys.W:
+                return Keys.UP;
+            case Input.Keys.DOWN:
+            case Input.Keys.S:
+                return Keys.DOWN;
+            case Input.Keys.Q:
+                return Keys.QUIT;
+            default:
+                return null;
+        }
+    }
+
+    private static Mouse toMouse(int button) {
+        switch (button) {
+            case Input.Buttons.LEFT:
+                return Mouse.SELECT;
+            case Input.Buttons.RIGHT:
+                return Mouse.DO_ACTION;
+            default:
+                return null;
+        }
+    }
 }
@@ -0,0 +1,103 @@
+package com.packtpub.libgdx.bludbourne;
+
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.MapObject;
+import com.badlogic.gdx.maps.objects.RectangleMapObject;
+import com.badlogic.gdx.math.Rectangle;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Rectangles of a portal layer in a flat float array, with the name of the map each one leads to.
+ * Maps only have a handful of portals, so queries test them all. Coordinates are in map pixels.
+ */
+public class PortalIndex {
+
+    // x, y, width, height per portal
+    private float[] bounds = new float[0];
+    private String[] targets = new String[0];
+    private int count;
+
+    public void build(MapLayer portalLayer) {
+        count = 0;
+        if (isNull(portalLayer)) {
+            return;
+        }
+
+        int objectCount = portalLayer.getObjects().getCount();
+        if (targets.length < objectCount) {
+            targets = new String[objectCount];
+            bounds = new float[objectCount * 4];
+        }
+
+        for (MapObject mapObject : portalLayer.getObjects()) {
+            if (!(mapObject instanceof RectangleMapObject)) {
+                continue;
+            }
+
+            Rectangle rectangle = ((RectangleMapObject) mapObject).getRectangle();
+            int offset = count * 4;
+            bounds[offset] = rectangle.x;
+            bounds[offset + 1] = rectangle.y;
+            bounds[offset + 2] = rectangle.width;
+            bounds[offset + 3] = rectangle.height;
+            targets[count++] = mapObject.getName();
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    // Name of the map behind the portal, may be null
+    public String getTarget(int index) {
+        return targets[index];
+    }
+
+    // Index of the first portal the box overlaps, -1 if there is none
+    public int find(float x, float y, float width, float height) {
+        for (int i = 0; i < count; i++) {
+            int offset = i * 4;
+            if (x < bounds[offset] + bounds[offset + 2]
+                    && x + width > bounds[offset]
+                    && y < bounds[offset + 1] + bounds[offset + 3]
+                    && y + height > bounds[offset + 1]) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    // Index of the first portal leading to the map, -1 if there is none
+    public int findTo(String mapName) {
+        for (int i = 0; i < count; i++) {
+            if (mapName.equals(targets[i])) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    // Squared distance from the point to the nearest edge of the portal, 0 inside it
+    public float distanceSquared(int index, float x, float y) {
+        int offset = index * 4;
+        float dx = Math.max(0f, Math.max(bounds[offset] - x, x - (bounds[offset] + bounds[offset + 2])));
+        float dy = Math.max(0f, Math.max(bounds[offset + 1] - y, y - (bounds[offset + 1] + bounds[offset + 3])));
+        return dx * dx + dy * dy;
+    }
+
+    // Bottom edge of the portal
+    public float getY(int index) {
+        return bounds[index * 4 + 1];
+    }
+
+    public float getCenterX(int index) {
+        return bounds[index * 4] + bounds[index * 4 + 2] / 2f;
+    }
+
+    public float getCenterY(int index) {
+        return bounds[index * 4 + 1] + bounds[index * 4 + 3] / 2f;
+    }
+}
@@ -0,0 +1,224 @@
+package com.packtpub.libgdx.bludbourne;
+
+import com.badlogic.gdx.utils.Array;
+import com.packtpub.libgdx.bludbourne.profiling.Profiler;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Fixed timestep simulation of an {@link EntityWorld}. Each step runs in two phases:
+ * <ol>
+ * <li>in parallel on a fork-join pool, every chunk of slots computes its next positions and sweeps
+ * them through the collision grid, see {@link SweptCollisionResolver}; chunks only write their own slots</li>
+ * <li>on the calling thread, the resolved positions are committed in slot order</li>
+ * </ol>
+ * Because no slot reads another slot's state, the result does not depend on how the work was split.
+ *
+ * With an {@link AreaOfInterest} set, entities far from the view are simulated less often, see there.
+ */
+public class SimulationScheduler {
+
+    public static final float DEFAULT_STEP = 1 / 60f;
+    public static final int DEFAULT_CHUNK_SIZE = 512;
+
+    // Drop time rather than fall further behind after a long stall
+    private static final int MAX_STEPS_PER_FRAME = 5;
+
+    // Called on the simulating thread before every step, e.g. to apply queued input
+    public interface StepListener {
+        void onStep(float step);
+    }
+
+    private final ForkJoinPool pool;
+    private final Array<StepListener> stepListeners = new Array<>();
+    private final float step;
+    private int chunkSize;
+    private float accumulator;
+
+    // What the parallel phase did with each slot
+    private static final byte OUTCOME_MOVED = 0;
+    private static final byte OUTCOME_BLOCKED = 1;
+    private static final byte OUTCOME_SKIPPED = 2;
+
+    private byte[] outcome = new byte[0];
+    // The world outcome belongs to, see update()
+    private EntityWorld steppedWorld;
+    private AreaOfInterest areaOfInterest;
+
+    public SimulationScheduler() {
+        this(DEFAULT_STEP, Runtime.getRuntime().availableProcessors());
+    }
+
+    public SimulationScheduler(float step, int parallelism) {
+        this.step = step;
+        this.chunkSize = DEFAULT_CHUNK_SIZE;
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+    }
+
+    // Runs as many fixed steps as the frame time allows and returns how many ran
+    public int update(float delta, EntityWorld world, CollisionGrid collisionGrid) {
+        accumulator += delta;
+
+        // Step listeners read the outcomes, which belong to the world stepped last; another world starts with none blocked
+        if (world != steppedWorld) {
+            Arrays.fill(outcome, OUTCOME_MOVED);
+            steppedWorld = world;
+        }
+
+        int steps = 0;
+        while (accumulator >= step && steps < MAX_STEPS_PER_FRAME) {
+            for (int i = 0; i < stepListeners.size; i++) {
+                stepListeners.get(i).onStep(step);
+            }
+            step(world, collisionGrid);
+            accumulator -= step;
+            steps++;
+        }
+
+        if (steps == MAX_STEPS_PER_FRAME && accumulator > step) {
+            accumulator = 0f;
+        }
+
+        return steps;
+    }
+
+    public void step(EntityWorld world, CollisionGrid collisionGrid) {
+        long start = Profiler.start();
+        int size = world.size();
+        if (outcome.length < size) {
+            outcome = new byte[world.getAlive().length];
+        }
+        if (!isNull(areaOfInterest)) {
+            areaOfInterest.beginStep();
+        }
+
+        // Forking only pays off with more than one worker and more than one chunk
+        if (size <= chunkSize || pool.getParallelism() == 1) {
+            simulate(world, collisionGrid, 0, size);
+        } else {
+            pool.invoke(new SimulateChunk(world, collisionGrid, 0, size));
+        }
+        steppedWorld = world;
+
+        boolean[] alive = world.getAlive();
+        int blockedCount = 0;
+        int skippedCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (alive[i]) {
+                if (outcome[i] == OUTCOME_SKIPPED) {
+                    skippedCount++;
+                    continue;
+                }
+                // Blocked entities still move up to the wall and along it
+                world.commitNextPosition(i);
+                if (outcome[i] == OUTCOME_BLOCKED) {
+                    blockedCount++;
+                }
+            }
+        }
+
+        Profiler.stop(Profiler.SIMULATION_STEP, start);
+        Profiler.count(Profiler.ENTITIES_UPDATED, world.getLiveCount() - skippedCount);
+        Profiler.count(Profiler.ENTITIES_BLOCKED, blockedCount);
+        Profiler.count(Profiler.ENTITIES_SKIPPED, skippedCount);
+    }
+
+    public void addStepListener(StepListener listener) {
+        if (!stepListeners.contains(listener, true)) {
+            stepListeners.add(listener);
+        }
+    }
+
+    public void removeStepListener(StepListener listener) {
+        stepListeners.removeValue(listener, true);
+    }
+
+    // Whether the slot ran into a wall in the last step of the world being updated
+    public boolean wasBlocked(int slot) {
+        return slot < outcome.length && outcome[slot] == OUTCOME_BLOCKED;
+    }
+
+    // Null simulates every entity every step
+    public void setAreaOfInterest(AreaOfInterest areaOfInterest) {
+        this.areaOfInterest = areaOfInterest;
+    }
+
+    public AreaOfInterest getAreaOfInterest() {
+        return areaOfInterest;
+    }
+
+    // Fraction of a step left in the accumulator, for interpolating rendered positions
+    public float getAlpha() {
+        return accumulator / step;
+    }
+
+    public float getStep() {
+        return step;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    public void dispose() {
+        pool.shutdown();
+    }
+
+    private void simulate(EntityWorld world, CollisionGrid collisionGrid, int from, int to) {
+        boolean[] alive = world.getAlive();
+
+        if (isNull(areaOfInterest)) {
+            world.update(from, to, step);
+        }
+
+        for (int i = from; i < to; i++) {
+            if (!alive[i]) {
+                continue;
+            }
+
+            if (!isNull(areaOfInterest)) {
+                float delta = areaOfInterest.advance(world, i, step);
+                if (delta == 0f) {
+                    outcome[i] = OUTCOME_SKIPPED;
+                    continue;
+                }
+                world.updateEntity(i, delta);
+            }
+
+            boolean blocked = !isNull(collisionGrid) && SweptCollisionResolver.resolve(world, collisionGrid, i);
+            outcome[i] = blocked ? OUTCOME_BLOCKED : OUTCOME_MOVED;
+        }
+    }
+
+    private class SimulateChunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final EntityWorld world;
+        private final CollisionGrid collisionGrid;
+        private final int from;
+        private final int to;
+
+        SimulateChunk(EntityWorld world, CollisionGrid collisionGrid, int from, int to) {
+            this.world = world;
+            this.collisionGrid = collisionGrid;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                simulate(world, collisionGrid, from, to);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new SimulateChunk(world, collisionGrid, from, middle),
+                      new SimulateChunk(world, collisionGrid, middle, to));
+        }
+    }
+}
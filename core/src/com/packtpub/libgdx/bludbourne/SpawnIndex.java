@@ -0,0 +1,172 @@
+package com.packtpub.libgdx.bludbourne;
+
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.MapObject;
+import com.badlogic.gdx.maps.objects.RectangleMapObject;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.FloatArray;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Spawn points of a map grouped by type, the upper cased object name, e.g. PLAYER_START. Each type
+ * is an implicit 2-d tree: the points are reordered so that every range [lo, hi) holds its median at
+ * (lo + hi) / 2, split on x at even depths and y at odd ones. Nearest point queries do not allocate.
+ * Positions are the bottom left corners of the spawn rectangles, in map pixels.
+ */
+public class SpawnIndex {
+
+    private static final class SpawnPoints {
+        private final FloatArray xs = new FloatArray();
+        private final FloatArray ys = new FloatArray();
+    }
+
+    private final Map<String, SpawnPoints> spawns = new HashMap<>();
+
+    // Results of the query in progress
+    private float[] queryX;
+    private float[] queryY;
+    private int nearest;
+    private float nearestDistance;
+
+    public void build(MapLayer spawnsLayer) {
+        for (SpawnPoints points : spawns.values()) {
+            points.xs.clear();
+            points.ys.clear();
+        }
+
+        if (isNull(spawnsLayer)) {
+            return;
+        }
+
+        for (MapObject mapObject : spawnsLayer.getObjects()) {
+            if (!(mapObject instanceof RectangleMapObject) || isNull(mapObject.getName())) {
+                continue;
+            }
+
+            String type = mapObject.getName().toUpperCase(Locale.ROOT);
+            SpawnPoints points = spawns.get(type);
+            if (isNull(points)) {
+                points = new SpawnPoints();
+                spawns.put(type, points);
+            }
+
+            Rectangle rectangle = ((RectangleMapObject) mapObject).getRectangle();
+            points.xs.add(rectangle.x);
+            points.ys.add(rectangle.y);
+        }
+
+        for (SpawnPoints points : spawns.values()) {
+            buildTree(points.xs.items, points.ys.items, 0, points.xs.size, 0);
+        }
+    }
+
+    // Type must be upper case. Returns false and leaves out untouched when the map has no spawn of that type
+    public boolean findNearest(String type, float x, float y, Vector2 out) {
+        SpawnPoints points = spawns.get(type);
+        if (isNull(points) || points.xs.size == 0) {
+            return false;
+        }
+
+        queryX = points.xs.items;
+        queryY = points.ys.items;
+        nearest = -1;
+        nearestDistance = Float.MAX_VALUE;
+        search(0, points.xs.size, 0, x, y);
+
+        out.set(queryX[nearest], queryY[nearest]);
+        return true;
+    }
+
+    public int getCount(String type) {
+        SpawnPoints points = spawns.get(type);
+        return isNull(points) ? 0 : points.xs.size;
+    }
+
+    private void search(int lo, int hi, int depth, float x, float y) {
+        if (lo >= hi) {
+            return;
+        }
+
+        int median = (lo + hi) >>> 1;
+        float dx = queryX[median] - x;
+        float dy = queryY[median] - y;
+        float distance = dx * dx + dy * dy;
+        if (distance < nearestDistance) {
+            nearestDistance = distance;
+            nearest = median;
+        }
+
+        // Visit the side holding the query first, the other one only if it can hold something closer
+        float split = (depth & 1) == 0 ? x - queryX[median] : y - queryY[median];
+        if (split < 0) {
+            search(lo, median, depth + 1, x, y);
+            if (split * split < nearestDistance) {
+                search(median + 1, hi, depth + 1, x, y);
+            }
+        } else {
+            search(median + 1, hi, depth + 1, x, y);
+            if (split * split < nearestDistance) {
+                search(lo, median, depth + 1, x, y);
+            }
+        }
+    }
+
+    private static void buildTree(float[] xs, float[] ys, int lo, int hi, int depth) {
+        if (hi - lo <= 1) {
+            return;
+        }
+
+        int median = (lo + hi) >>> 1;
+        if ((depth & 1) == 0) {
+            select(xs, ys, lo, hi - 1, median);
+        } else {
+            select(ys, xs, lo, hi - 1, median);
+        }
+        buildTree(xs, ys, lo, median, depth + 1);
+        buildTree(xs, ys, median + 1, hi, depth + 1);
+    }
+
+    // Quickselect on keys[lo..hi] so that keys[k] is in its sorted place, others moves along with keys
+    private static void select(float[] keys, float[] others, int lo, int hi, int k) {
+        while (lo < hi) {
+            float pivot = keys[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (keys[i] < pivot) {
+                    i++;
+                }
+                while (keys[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(keys, others, i++, j--);
+                }
+            }
+
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static void swap(float[] keys, float[] others, int a, int b) {
+        float key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+
+        float other = others[a];
+        others[a] = others[b];
+        others[b] = other;
+    }
+}
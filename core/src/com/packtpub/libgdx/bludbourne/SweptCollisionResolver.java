@@ -0,0 +1,69 @@
+package com.packtpub.libgdx.bludbourne;
+
+/**
+ * Moves entity boxes against a {@link CollisionGrid} without letting them tunnel. The box of a slot is
+ * swept from its position to its next position; at the first wall it runs into it stops flush against
+ * the wall and the rest of the move carries on along it, so a diagonal move slides and a straight one
+ * stops. The result is written back as the slot's next position.
+ *
+ * Only reads the grid and writes the slot it is given, so slots may be resolved from several threads.
+ * Coordinates in the world are unit scaled, the grid is in map pixels.
+ */
+public final class SweptCollisionResolver {
+
+    // Entity bounding box in map pixels, the same box Entity.updateBoundingBox() uses
+    public static final float BOUNDING_BOX_WIDTH = 16f;
+    public static final float BOUNDING_BOX_HEIGHT = 8f;
+
+    // Every contact stops the move on one axis
+    private static final int MAX_CONTACTS = 2;
+
+    private SweptCollisionResolver() {
+    }
+
+    // Returns true if the move was cut short by a wall
+    public static boolean resolve(EntityWorld world, CollisionGrid collisionGrid, int slot) {
+        float x = world.getX(slot) / MapManager.UNIT_SCALE;
+        float y = world.getY(slot) / MapManager.UNIT_SCALE;
+        float dx = world.getNextX(slot) / MapManager.UNIT_SCALE - x;
+        float dy = world.getNextY(slot) / MapManager.UNIT_SCALE - y;
+
+        boolean contact = false;
+        for (int i = 0; i < MAX_CONTACTS && (dx != 0f || dy != 0f); i++) {
+            int hit = collisionGrid.sweep(x, y, BOUNDING_BOX_WIDTH, BOUNDING_BOX_HEIGHT, dx, dy);
+            if (hit < 0) {
+                x += dx;
+                y += dy;
+                break;
+            }
+            contact = true;
+
+            // The box corner positions where it would overlap the wall it hit
+            float lowX = collisionGrid.getRectangleX(hit) - BOUNDING_BOX_WIDTH;
+            float highX = collisionGrid.getRectangleX(hit) + collisionGrid.getRectangleWidth(hit);
+            float lowY = collisionGrid.getRectangleY(hit) - BOUNDING_BOX_HEIGHT;
+            float highY = collisionGrid.getRectangleY(hit) + collisionGrid.getRectangleHeight(hit);
+            float entryX = CollisionGrid.entryTime(x, dx, 1f / dx, dx > 0f ? lowX : highX, lowX, highX);
+            float entryY = CollisionGrid.entryTime(y, dy, 1f / dy, dy > 0f ? lowY : highY, lowY, highY);
+
+            // Snap to the edge rather than add up the fraction, touching boxes do not collide
+            if (entryX >= entryY) {
+                x = dx > 0f ? lowX : highX;
+                y += dy * entryX;
+                dy *= 1f - entryX;
+                dx = 0f;
+            } else {
+                y = dy > 0f ? lowY : highY;
+                x += dx * entryY;
+                dx *= 1f - entryY;
+                dy = 0f;
+            }
+        }
+
+        // A free move keeps the next position exactly as it was computed
+        if (contact) {
+            world.setNextPosition(slot, x * MapManager.UNIT_SCALE, y * MapManager.UNIT_SCALE);
+        }
+        return contact;
+    }
+}
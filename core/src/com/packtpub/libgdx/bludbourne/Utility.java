@@ -1,14 +1,27 @@
 package com.packtpub.libgdx.bludbourne;
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetLoaderParameters;
 import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.FileHandleResolver;
+import com.badlogic.gdx.assets.loaders.TextureAtlasLoader;
 import com.badlogic.gdx.assets.loaders.TextureLoader;
 import com.badlogic.gdx.assets.loaders.resolvers.InternalFileHandleResolver;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
 import com.badlogic.gdx.maps.tiled.TiledMap;
 import com.badlogic.gdx.maps.tiled.TmxMapLoader;
+import com.badlogic.gdx.utils.Array;
+import com.packtpub.libgdx.bludbourne.logging.Log;
+import com.packtpub.libgdx.bludbourne.maps.BinaryMapFormat;
+import com.packtpub.libgdx.bludbourne.maps.BinaryMapLoader;
+import com.packtpub.libgdx.bludbourne.profiling.Profiler;
 
-import static jdk.internal.joptsimple.internal.Strings.isNullOrEmpty;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.Objects.isNull;
 
 public final class Utility {
     private static final String TAG = Utility.class.getSimpleName();
@@ -17,73 +30,320 @@ public final class Utility {
 
     public static final AssetManager assetManager = new AssetManager();
 
+    // Packed from assets/sprites by the desktop packTextures task, regions are named after the file below sprites/
+    public static final String SPRITE_ATLAS_PATH = "atlas/sprites.atlas";
+    private static final String SPRITE_ROOT = "sprites/";
+
+    // findRegion() scans the whole atlas, remember the answers including the misses
+    private static final Map<String, TextureAtlas.AtlasRegion> spriteRegions = new HashMap<>();
+
+    // Creates every texture, including the ones maps and the atlas depend on, see setTextureLoader()
+    private static TextureLoader textureLoader = new TextureLoader(filePathResolver);
+
+    // Without a GL context: no textures are created and maps only carry their tile ids and objects
+    private static boolean headless = false;
+
+    public interface AssetLoadedListener {
+        void assetLoaded(String fileNamePath);
+    }
+
     public static void unloadAsset(String assetFileNamePath) {
         // once the asset manager is done loading
         if (assetManager.isLoaded(assetFileNamePath)) {
             assetManager.unload(assetFileNamePath);
         } else {
-            Gdx.app.debug(TAG, "Asset is not loaded; Nothing to unload: " + assetFileNamePath);
+            Log.debug(TAG, "Asset is not loaded; Nothing to unload: {}", assetFileNamePath);
         }
     }
 
+    public static void setHeadless(boolean headless) {
+        Utility.headless = headless;
+    }
+
+    public static boolean isHeadless() {
+        return headless || isNull(Gdx.gl);
+    }
+
+    public static boolean isNullOrEmpty(String value) {
+        return isNull(value) || value.isEmpty();
+    }
+
     public static float loadCompleted() { return assetManager.getProgress(); }
 
     public static int numberAssetsQueued() { return assetManager.getQueuedAssets(); }
 
     public static boolean updateAssetLoading() { return assetManager.update(); }
 
+    // Works through the queued loads for at most the given time, returns true once the queue is empty
+    public static boolean updateAssetLoading(int budgetMillis) {
+        long start = Profiler.start();
+        boolean done = assetManager.update(budgetMillis);
+        Profiler.stop(Profiler.ASSET_UPDATE, start);
+        return done;
+    }
+
     public static boolean isAssetLoaded(String fileName) {
         return assetManager.isLoaded(fileName);
     }
 
+    public static boolean isMapAssetLoaded(String mapFileNamePath) {
+        return assetManager.isLoaded(resolveMapAssetPath(mapFileNamePath));
+    }
+
     public static void loadMapAsset(String mapFileNamePath) {
         if (isNullOrEmpty(mapFileNamePath)) {
             return;
         }
 
+        String assetPath = resolveMapAssetPath(mapFileNamePath);
+
         // load asset
-        if (filePathResolver.resolve(mapFileNamePath).exists()) {
-            assetManager.setLoader(TiledMap.class, new TmxMapLoader(filePathResolver));
-            assetManager.load(mapFileNamePath, TiledMap.class);
+        if (filePathResolver.resolve(assetPath).exists()) {
+            long start = Profiler.start();
+            setMapLoaders();
+            assetManager.load(assetPath, TiledMap.class, createMapParameters(assetPath));
             // Until we add loading screen, just block until we load the map
-            assetManager.finishLoadingAsset(mapFileNamePath);
-            Gdx.app.debug(TAG, "Map loaded!: " + mapFileNamePath);
+            assetManager.finishLoadingAsset(assetPath);
+            Profiler.stop(Profiler.MAP_LOAD, start);
+            Log.debug(TAG, "Map loaded!: {}", assetPath);
         } else {
-            Gdx.app.debug(TAG, "Map doesn't exist!: " + mapFileNamePath );
+            Log.debug(TAG, "Map doesn't exist!: {}", assetPath);
+        }
+    }
+
+    // Queues the map without blocking, the listener is called from updateAssetLoading() once it is ready.
+    // Returns false if there is no such map
+    public static boolean loadMapAssetAsync(final String mapFileNamePath, final AssetLoadedListener listener) {
+        if (isNullOrEmpty(mapFileNamePath)) {
+            return false;
         }
+
+        String assetPath = resolveMapAssetPath(mapFileNamePath);
+
+        if (filePathResolver.resolve(assetPath).exists()) {
+            setMapLoaders();
+
+            AssetLoaderParameters<TiledMap> parameters = createMapParameters(assetPath);
+            parameters.loadedCallback = loadedCallback(mapFileNamePath, listener);
+
+            assetManager.load(assetPath, TiledMap.class, parameters);
+            Log.debug(TAG, "Map queued: {}", assetPath);
+            return true;
+        }
+
+        Log.debug(TAG, "Map doesn't exist!: {}", assetPath);
+        return false;
+    }
+
+    public static void unloadMapAsset(String mapFileNamePath) {
+        unloadAsset(resolveMapAssetPath(mapFileNamePath));
+    }
+
+    // Releases one reference to a map queued with loadMapAssetAsync(), whether it has loaded yet or not;
+    // the asset manager takes a map still in its queue off it and cancels one it is loading
+    public static void releaseMapAsset(String mapFileNamePath) {
+        String loadedPath = getLoadedMapAssetPath(mapFileNamePath);
+        assetManager.unload(isNull(loadedPath) ? resolveMapAssetPath(mapFileNamePath) : loadedPath);
     }
 
     public static TiledMap getMapAsset(String mapFileNamePath) {
-        if (assetManager.isLoaded(mapFileNamePath)) {
-            return assetManager.get(mapFileNamePath,TiledMap.class);
+        String assetPath = resolveMapAssetPath(mapFileNamePath);
+
+        if (assetManager.isLoaded(assetPath)) {
+            return assetManager.get(assetPath,TiledMap.class);
         } else {
-            Gdx.app.debug(TAG, "Map is not loaded: " + mapFileNamePath );
+            Log.debug(TAG, "Map is not loaded: {}", assetPath);
         }
 
         return null;
     }
 
+    private static void setMapLoaders() {
+        if (isHeadless()) {
+            // TmxMapLoader needs textures, the binary loader compiles .tmx files in memory instead
+            assetManager.setLoader(TiledMap.class, new BinaryMapLoader(filePathResolver));
+        } else {
+            assetManager.setLoader(TiledMap.class, new TmxMapLoader(filePathResolver));
+            assetManager.setLoader(TiledMap.class, BinaryMapFormat.EXTENSION, new BinaryMapLoader(filePathResolver));
+        }
+    }
+
+    private static AssetLoaderParameters<TiledMap> createMapParameters(String assetPath) {
+        if (isHeadless()) {
+            BinaryMapLoader.Parameters parameters = new BinaryMapLoader.Parameters();
+            parameters.loadTextures = false;
+            return parameters;
+        } else if (assetPath.endsWith(BinaryMapFormat.EXTENSION)) {
+            return new BinaryMapLoader.Parameters();
+        }
+        return new TmxMapLoader.Parameters();
+    }
+
+    // Name of the map in the asset manager, the compiled or the source path, null when it is not loaded
+    public static String getLoadedMapAssetPath(String mapFileNamePath) {
+        String compiledPath = BinaryMapFormat.compiledPathFor(mapFileNamePath);
+        if (assetManager.isLoaded(compiledPath)) {
+            return compiledPath;
+        }
+        return assetManager.isLoaded(mapFileNamePath) ? mapFileNamePath : null;
+    }
+
+    // Name the map gets in the asset manager when it is loaded now
+    public static String getMapAssetPath(String mapFileNamePath) {
+        return resolveMapAssetPath(mapFileNamePath);
+    }
+
+    // Loaded assets that need the asset, directly or through other assets, nearest first
+    public static Array<String> getDependents(String assetFileNamePath) {
+        Array<String> dependents = new Array<>();
+        Array<String> assetNames = assetManager.getAssetNames();
+
+        // Breadth first over the reverse edges, dependents doubles as the queue
+        String dependency = assetFileNamePath;
+        for (int next = 0; ; dependency = dependents.get(next++)) {
+            for (String assetName : assetNames) {
+                Array<String> dependencies = assetManager.getDependencies(assetName);
+                if (!isNull(dependencies) && dependencies.contains(dependency, false) && !dependents.contains(assetName, false)) {
+                    dependents.add(assetName);
+                }
+            }
+            if (next == dependents.size) {
+                return dependents;
+            }
+        }
+    }
+
+    // Prefer the map compiled by the compileMaps task unless the .tmx was edited since, fall back to parsing the .tmx
+    private static String resolveMapAssetPath(String mapFileNamePath) {
+        String compiledPath = BinaryMapFormat.compiledPathFor(mapFileNamePath);
+        if (compiledPath.equals(mapFileNamePath)) {
+            return mapFileNamePath;
+        }
+
+        FileHandle compiledFile = filePathResolver.resolve(compiledPath);
+        if (compiledFile.exists() && compiledFile.lastModified() >= filePathResolver.resolve(mapFileNamePath).lastModified()) {
+            return compiledPath;
+        }
+        return mapFileNamePath;
+    }
+
+    // Null goes back to decoding each texture on the asset manager's thread
+    public static void setTextureLoader(TextureLoader loader) {
+        textureLoader = isNull(loader) ? new TextureLoader(filePathResolver) : loader;
+        assetManager.setLoader(Texture.class, textureLoader);
+    }
+
+    public static FileHandleResolver getFileHandleResolver() {
+        return filePathResolver;
+    }
+
     public static void loadTextureAsset(String textureFileNamePath) {
         if (isNullOrEmpty(textureFileNamePath)) {
             return;
         }
 
         if (filePathResolver.resolve(textureFileNamePath).exists()) {
-            assetManager.setLoader(Texture.class, new TextureLoader(filePathResolver));
+            assetManager.setLoader(Texture.class, textureLoader);
             assetManager.load(textureFileNamePath, Texture.class);
             assetManager.finishLoadingAsset(textureFileNamePath);
         } else {
-            Gdx.app.debug(TAG, "Texture doesn't exist!: " + textureFileNamePath );
+            Log.debug(TAG, "Texture doesn't exist!: {}", textureFileNamePath);
+        }
+    }
+
+    public static void loadTextureAssetAsync(final String textureFileNamePath, final AssetLoadedListener listener) {
+        if (isNullOrEmpty(textureFileNamePath)) {
+            return;
+        }
+
+        if (filePathResolver.resolve(textureFileNamePath).exists()) {
+            assetManager.setLoader(Texture.class, textureLoader);
+            TextureLoader.TextureParameter parameters = new TextureLoader.TextureParameter();
+            parameters.loadedCallback = loadedCallback(textureFileNamePath, listener);
+            assetManager.load(textureFileNamePath, Texture.class, parameters);
+        } else {
+            Log.debug(TAG, "Texture doesn't exist!: {}", textureFileNamePath);
         }
     }
 
+    public static TextureAtlas getSpriteAtlas() {
+        if (!assetManager.isLoaded(SPRITE_ATLAS_PATH)) {
+            if (!loadSpriteAtlasAsync()) {
+                return null;
+            }
+            assetManager.finishLoadingAsset(SPRITE_ATLAS_PATH);
+        }
+
+        return assetManager.get(SPRITE_ATLAS_PATH, TextureAtlas.class);
+    }
+
+    // Queues the atlas without blocking, false when it was not packed
+    public static boolean loadSpriteAtlasAsync() {
+        if (!filePathResolver.resolve(SPRITE_ATLAS_PATH).exists()) {
+            return false;
+        }
+
+        assetManager.setLoader(Texture.class, textureLoader);
+        assetManager.setLoader(TextureAtlas.class, new TextureAtlasLoader(filePathResolver));
+        assetManager.load(SPRITE_ATLAS_PATH, TextureAtlas.class);
+        spriteRegions.clear();
+        return true;
+    }
+
+    // Atlas region packed from a sprite sheet such as "sprites/characters/Warrior.png", null when it was not packed
+    public static TextureAtlas.AtlasRegion getSpriteRegion(String spriteFileNamePath) {
+        if (isNullOrEmpty(spriteFileNamePath) || isHeadless()) {
+            return null;
+        }
+
+        TextureAtlas atlas = getSpriteAtlas();
+        if (isNull(atlas)) {
+            return null;
+        }
+
+        if (spriteRegions.containsKey(spriteFileNamePath)) {
+            return spriteRegions.get(spriteFileNamePath);
+        }
+
+        String regionName = spriteFileNamePath;
+        if (regionName.startsWith(SPRITE_ROOT)) {
+            regionName = regionName.substring(SPRITE_ROOT.length());
+        }
+        int extension = regionName.lastIndexOf('.');
+        if (extension > regionName.lastIndexOf('/')) {
+            regionName = regionName.substring(0, extension);
+        }
+
+        TextureAtlas.AtlasRegion region = atlas.findRegion(regionName);
+        if (isNull(region)) {
+            Log.debug(TAG, "Sprite is not in the atlas: {}", spriteFileNamePath);
+        }
+        spriteRegions.put(spriteFileNamePath, region);
+        return region;
+    }
+
     public static Texture getTextureAsset(String textureFileNamePath) {
         if (assetManager.isLoaded(textureFileNamePath)) {
             return assetManager.get(textureFileNamePath,Texture.class);
         } else {
-            Gdx.app.debug(TAG, "Map is not loaded: " + textureFileNamePath );
+            Log.debug(TAG, "Map is not loaded: {}", textureFileNamePath);
         }
 
         return null;
     }
+
+    // Reports the path the caller asked for, not the resolved one (e.g. the .tmx for a compiled map)
+    private static AssetLoaderParameters.LoadedCallback loadedCallback(final String requestedPath, final AssetLoadedListener listener) {
+        return new AssetLoaderParameters.LoadedCallback() {
+            // LoadedCallback declares the raw type, Class<?> would not override it
+            @SuppressWarnings("rawtypes")
+            @Override
+            public void finishedLoading(AssetManager manager, String fileName, Class type) {
+                Log.debug(TAG, "Asset loaded!: {}", fileName);
+                if (listener != null) {
+                    listener.assetLoaded(requestedPath);
+                }
+            }
+        };
+    }
 }
@@ -0,0 +1,75 @@
+package com.packtpub.libgdx.bludbourne.boot;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Json;
+import com.badlogic.gdx.utils.JsonWriter;
+
+/**
+ * Everything the game loads at boot, written at build time by {@link AssetManifestBuilder}: every map
+ * with the textures its tilesets need, the sprite atlas and the size of each file. The
+ * {@link BootLoader} reads it so it knows the whole set up front instead of discovering it one
+ * dependency at a time. Paths are relative to the assets root, the way the asset manager names them.
+ */
+public class AssetManifest {
+
+    public static final String PATH = "manifest.json";
+
+    public static class MapEntry {
+        // Source path as MapManager knows it, the compiled file is the one loaded when it exists
+        public String path;
+        public String compiledPath;
+        public long bytes;
+        public String[] textures = new String[0];
+    }
+
+    public static class TextureEntry {
+        public String path;
+        public long bytes;
+        public int width;
+        public int height;
+    }
+
+    public MapEntry[] maps = new MapEntry[0];
+    public TextureEntry[] textures = new TextureEntry[0];
+    // Null when the sprites were not packed
+    public String atlas;
+    public String[] atlasTextures = new String[0];
+
+    public static AssetManifest read(FileHandle file) {
+        return new Json().fromJson(AssetManifest.class, file);
+    }
+
+    public void write(FileHandle file) {
+        Json json = new Json(JsonWriter.OutputType.json);
+        file.writeString(json.prettyPrint(this), false, "UTF-8");
+    }
+
+    public MapEntry getMap(String path) {
+        for (MapEntry map : maps) {
+            if (map.path.equals(path) || path.equals(map.compiledPath)) {
+                return map;
+            }
+        }
+        return null;
+    }
+
+    public TextureEntry getTexture(String path) {
+        for (TextureEntry texture : textures) {
+            if (texture.path.equals(path)) {
+                return texture;
+            }
+        }
+        return null;
+    }
+
+    public long getTotalBytes() {
+        long bytes = 0;
+        for (MapEntry map : maps) {
+            bytes += map.bytes;
+        }
+        for (TextureEntry texture : textures) {
+            bytes += texture.bytes;
+        }
+        return bytes;
+    }
+}
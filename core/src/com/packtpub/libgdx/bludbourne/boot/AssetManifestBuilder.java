@@ -0,0 +1,115 @@
+package com.packtpub.libgdx.bludbourne.boot;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.packtpub.libgdx.bludbourne.Utility;
+import com.packtpub.libgdx.bludbourne.maps.BinaryMapCompiler;
+import com.packtpub.libgdx.bludbourne.maps.BinaryMapFormat;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Build time writer of the {@link AssetManifest}. Run by the desktop buildManifest Gradle task with the
+ * assets directory as argument, after the maps are compiled and the sprites packed so their sizes are
+ * the ones shipped. Runs without a libGDX backend.
+ */
+public class AssetManifestBuilder {
+
+    private static final String MAPS_DIR = "maps";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: AssetManifestBuilder <assets directory>");
+            System.exit(1);
+        }
+
+        File assetsDir = new File(args[0]);
+        AssetManifest manifest = build(assetsDir);
+        manifest.write(new FileHandle(new File(assetsDir, AssetManifest.PATH)));
+        System.out.println("Wrote " + AssetManifest.PATH + ": " + manifest.maps.length + " maps, "
+                + manifest.textures.length + " textures, " + manifest.getTotalBytes() + " bytes");
+    }
+
+    public static AssetManifest build(File assetsDir) throws Exception {
+        File mapsDir = new File(assetsDir, MAPS_DIR);
+        File[] sources = mapsDir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(BinaryMapFormat.SOURCE_EXTENSION);
+            }
+        });
+        if (sources == null) {
+            throw new IOException("Not a directory: " + mapsDir);
+        }
+        Arrays.sort(sources);
+
+        AssetManifest manifest = new AssetManifest();
+        Set<String> texturePaths = new LinkedHashSet<>();
+
+        manifest.maps = new AssetManifest.MapEntry[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            AssetManifest.MapEntry map = new AssetManifest.MapEntry();
+            map.path = MAPS_DIR + "/" + sources[i].getName();
+            File compiled = new File(mapsDir, BinaryMapFormat.compiledPathFor(sources[i].getName()));
+            map.compiledPath = compiled.exists() ? MAPS_DIR + "/" + compiled.getName() : null;
+            map.bytes = compiled.exists() ? compiled.length() : sources[i].length();
+
+            List<String> images = BinaryMapCompiler.tilesetImages(sources[i]);
+            map.textures = images.toArray(new String[images.size()]);
+            texturePaths.addAll(images);
+            manifest.maps[i] = map;
+        }
+
+        File atlasFile = new File(assetsDir, Utility.SPRITE_ATLAS_PATH);
+        if (atlasFile.exists()) {
+            // Page files sit next to the atlas
+            String atlasDir = Utility.SPRITE_ATLAS_PATH.substring(0, Utility.SPRITE_ATLAS_PATH.lastIndexOf('/') + 1);
+            TextureAtlas.TextureAtlasData atlasData = new TextureAtlas.TextureAtlasData(new FileHandle(atlasFile),
+                    new FileHandle(atlasFile.getParentFile()), false);
+            manifest.atlas = Utility.SPRITE_ATLAS_PATH;
+            manifest.atlasTextures = new String[atlasData.getPages().size];
+            for (int i = 0; i < atlasData.getPages().size; i++) {
+                manifest.atlasTextures[i] = atlasDir + atlasData.getPages().get(i).textureFile.name();
+                texturePaths.add(manifest.atlasTextures[i]);
+            }
+        }
+
+        manifest.textures = new AssetManifest.TextureEntry[texturePaths.size()];
+        int next = 0;
+        for (String path : texturePaths) {
+            File file = new File(assetsDir, path);
+            if (!file.exists()) {
+                throw new IOException("Missing texture " + file);
+            }
+
+            AssetManifest.TextureEntry texture = new AssetManifest.TextureEntry();
+            texture.path = path;
+            texture.bytes = file.length();
+            readPngSize(file, texture);
+            manifest.textures[next++] = texture;
+        }
+        return manifest;
+    }
+
+    // Width and height from the IHDR chunk, which always comes first after the signature
+    private static void readPngSize(File file, AssetManifest.TextureEntry texture) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            long signature = in.readLong();
+            in.readInt();
+            int chunkType = in.readInt();
+            if (signature != 0x89504E470D0A1A0AL || chunkType != 0x49484452) {
+                throw new IOException("Not a PNG: " + file);
+            }
+            texture.width = in.readInt();
+            texture.height = in.readInt();
+        }
+    }
+}
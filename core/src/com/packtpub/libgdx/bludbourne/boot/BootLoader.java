@@ -0,0 +1,285 @@
+package com.packtpub.libgdx.bludbourne.boot;
+
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.TextureLoader;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.glutils.PixmapTextureData;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.packtpub.libgdx.bludbourne.MapManager;
+import com.packtpub.libgdx.bludbourne.Utility;
+import com.packtpub.libgdx.bludbourne.logging.Log;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Warms the asset manager up before the game starts instead of loading each asset the first time it is
+ * needed. The {@link AssetManifest} names the textures of every map up front, so they are all decoded at
+ * once on a pool of worker threads while the asset manager parses the start map on its own thread; the
+ * manager picks the decoded pixmaps up and uploads them on the GL thread within the budget given to
+ * {@link #update(int)}, so the loading screen keeps drawing. The other maps are queued behind it, the
+ * game starts without waiting for them and the loader stays until they are in, see {@link #releaseWhenIdle()}.
+ *
+ * Without a manifest the maps and the atlas are still queued, each texture is then decoded by the manager in turn.
+ */
+public class BootLoader implements Disposable {
+
+    private static final String TAG = BootLoader.class.getSimpleName();
+
+    private static boolean enabled = true;
+
+    private final AssetManifest manifest;
+    private final ExecutorService decoders;
+    // Decodes not yet picked up by the texture loader, by asset path
+    private final Map<String, Future<?>> decodes;
+    // Finished ones, guarded by itself so a decode finishing after dispose() frees its own pixmap
+    private final Map<String, Pixmap> decoded;
+    private boolean disposed;
+    private String startMapPath;
+    private final Array<String> otherMapPaths;
+    private boolean atlasQueued;
+    private long startNanos;
+    private long readyNanos;
+
+    public static void setEnabled(boolean enabled) {
+        BootLoader.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public BootLoader(FileHandle manifestFile) {
+        if (manifestFile.exists()) {
+            manifest = AssetManifest.read(manifestFile);
+        } else {
+            manifest = null;
+            Log.info(TAG, "No {}, textures are decoded one at a time", manifestFile.path());
+        }
+
+        decodes = new ConcurrentHashMap<>();
+        decoded = new HashMap<>();
+        otherMapPaths = new Array<>();
+
+        final AtomicInteger threads = new AtomicInteger();
+        decoders = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "Boot decoder " + threads.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    // Decodes the textures of every map and queues the maps and the atlas, the map the player starts on first.
+    // A null start map, e.g. when there is no saved game, starts a new game in town
+    public void start(MapManager mapManager, String startMapName) {
+        startNanos = System.nanoTime();
+
+        if (isNull(startMapName) || isNull(mapManager.getMapPath(startMapName))) {
+            startMapName = MapManager.TOWN;
+        }
+        startMapPath = mapManager.getMapPath(startMapName);
+        for (String mapName : mapManager.getMapNames()) {
+            if (!mapName.equals(startMapName)) {
+                otherMapPaths.add(mapManager.getMapPath(mapName));
+            }
+        }
+
+        if (!Utility.isHeadless()) {
+            if (!isNull(manifest)) {
+                Array<String> mapPaths = new Array<>();
+                mapPaths.add(startMapPath);
+                mapPaths.addAll(otherMapPaths);
+                decodeAll(mapPaths);
+            }
+            atlasQueued = Utility.loadSpriteAtlasAsync();
+        }
+        Utility.loadMapAssetAsync(startMapPath, null);
+        for (String mapPath : otherMapPaths) {
+            Utility.loadMapAssetAsync(mapPath, null);
+        }
+
+        Log.info(TAG, "Loading {}, {} textures decoding in parallel", startMapPath, decodes.size());
+    }
+
+    // GL thread, uploads for at most the given time. Returns true once the start map and the atlas are loaded,
+    // the other maps keep loading in the game's frames
+    public boolean update(int budgetMillis) {
+        Utility.updateAssetLoading(budgetMillis);
+        if (!Utility.isMapAssetLoaded(startMapPath) || (atlasQueued && !Utility.isAssetLoaded(Utility.SPRITE_ATLAS_PATH))) {
+            return false;
+        }
+
+        if (readyNanos == 0) {
+            readyNanos = System.nanoTime();
+            Log.info(TAG, "Start map loaded in {} ms", (readyNanos - startNanos) / 1000000L);
+        }
+        return true;
+    }
+
+    public float getProgress() {
+        return Utility.loadCompleted();
+    }
+
+    // Call every frame once the game has started. When the asset manager is idle every map is loaded and the
+    // game holds its own references to the ones it keeps, those taken here are dropped and the loader
+    // disposed. Returns true then
+    public boolean releaseWhenIdle() {
+        if (Utility.numberAssetsQueued() > 0) {
+            return false;
+        }
+
+        // The atlas reference is kept, it is the one getSpriteAtlas() would have taken and never drops
+        if (!isNull(startMapPath)) {
+            Utility.unloadMapAsset(startMapPath);
+            startMapPath = null;
+        }
+        for (String mapPath : otherMapPaths) {
+            Utility.unloadMapAsset(mapPath);
+        }
+        otherMapPaths.clear();
+        Log.info(TAG, "Boot finished in {} ms", (System.nanoTime() - startNanos) / 1000000L);
+        dispose();
+        return true;
+    }
+
+    // Does not wait for the pool: decodes that have not started are cancelled, running ones free their own pixmap
+    @Override
+    public void dispose() {
+        synchronized (decoded) {
+            disposed = true;
+            // Decoded for nothing, the manifest listed a texture no asset asked for
+            for (Map.Entry<String, Pixmap> entry : decoded.entrySet()) {
+                Log.debug(TAG, "Texture decoded but not loaded: {}", entry.getKey());
+                entry.getValue().dispose();
+            }
+            decoded.clear();
+        }
+
+        for (Future<?> future : decodes.values()) {
+            future.cancel(false);
+        }
+        decodes.clear();
+        decoders.shutdown();
+        Utility.setTextureLoader(null);
+    }
+
+    private void decodeAll(Array<String> mapPaths) {
+        // Roughly in the order the asset manager will ask for them
+        Set<String> paths = new LinkedHashSet<>();
+        if (!isNull(manifest.atlas)) {
+            for (String path : manifest.atlasTextures) {
+                paths.add(path);
+            }
+        }
+        for (String mapPath : mapPaths) {
+            AssetManifest.MapEntry map = manifest.getMap(mapPath);
+            if (isNull(map)) {
+                Log.info(TAG, "Map is not in the manifest: {}", mapPath);
+                continue;
+            }
+            for (String path : map.textures) {
+                paths.add(path);
+            }
+        }
+
+        for (final String path : paths) {
+            decodes.put(path, decoders.submit(new Runnable() {
+                @Override
+                public void run() {
+                    decode(path);
+                }
+            }));
+        }
+        Utility.setTextureLoader(new DecodedTextureLoader());
+    }
+
+    // Pool thread
+    private void decode(String path) {
+        Pixmap pixmap;
+        try {
+            pixmap = new Pixmap(Utility.getFileHandleResolver().resolve(path));
+        } catch (GdxRuntimeException e) {
+            Log.error(TAG, "Could not decode {}", path, e);
+            return;
+        }
+
+        synchronized (decoded) {
+            if (disposed) {
+                pixmap.dispose();
+            } else {
+                decoded.put(path, pixmap);
+            }
+        }
+    }
+
+    // Waits for the decode, null when there is none, it failed or the loader was disposed
+    private Pixmap take(String path) {
+        Future<?> future = decodes.remove(path);
+        if (isNull(future)) {
+            return null;
+        }
+
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Log.error(TAG, "Could not decode {}", path, e.getCause());
+            return null;
+        } catch (CancellationException e) {
+            // Disposed
+            return null;
+        }
+
+        synchronized (decoded) {
+            return decoded.remove(path);
+        }
+    }
+
+    // Hands the texture data a pixmap decoded by the pool instead of decoding it on the manager's thread
+    private class DecodedTextureLoader extends TextureLoader {
+
+        DecodedTextureLoader() {
+            super(Utility.getFileHandleResolver());
+        }
+
+        @Override
+        public void loadAsync(AssetManager manager, String fileName, FileHandle file, TextureParameter parameter) {
+            Pixmap pixmap = take(fileName);
+            if (isNull(pixmap)) {
+                super.loadAsync(manager, fileName, file, parameter);
+                return;
+            }
+
+            // Filters and wrapping are applied from the original parameter in loadSync()
+            TextureParameter decodedParameter = new TextureParameter();
+            if (!isNull(parameter)) {
+                decodedParameter.format = parameter.format;
+                decodedParameter.genMipMaps = parameter.genMipMaps;
+                decodedParameter.texture = parameter.texture;
+            }
+            decodedParameter.textureData = new PixmapTextureData(pixmap, decodedParameter.format, decodedParameter.genMipMaps, true);
+            super.loadAsync(manager, fileName, file, decodedParameter);
+        }
+    }
+}
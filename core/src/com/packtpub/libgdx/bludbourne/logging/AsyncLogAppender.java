@@ -0,0 +1,283 @@
+package com.packtpub.libgdx.bludbourne.logging;
+
+import com.badlogic.gdx.ApplicationLogger;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Hands log events to a background thread that appends them to a file and, up to a level, echoes
+ * them to the console. Events are formatted straight into the slots of a bounded ring, so logging
+ * costs the calling thread no allocation and no I/O.
+ *
+ * Any thread may log: a slot is claimed by advancing the tail with a CAS and published by writing
+ * its sequence number, the writer thread consumes the slots in order. When the writer falls a whole
+ * ring behind new events are dropped and counted rather than blocking the game.
+ */
+public class AsyncLogAppender implements Disposable {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final long IDLE_PARK_NANOS = 2000000L;
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private final LogEvent[] events;
+    private final int mask;
+    private final AtomicLongArray published;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final FileChannel channel;
+    private final ByteBuffer output;
+    private final int consoleLevel;
+    private final long timeZoneOffsetMillis;
+
+    private final Thread writer;
+    private volatile boolean running = true;
+    private boolean writeFailed;
+    private long reportedDropped;
+
+    // file may be null to only echo to the console
+    public AsyncLogAppender(File file, int consoleLevel) {
+        this(file, consoleLevel, DEFAULT_CAPACITY);
+    }
+
+    public AsyncLogAppender(File file, int consoleLevel, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        events = new LogEvent[size];
+        published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            events[i] = new LogEvent(this);
+            published.set(i, -1);
+        }
+        mask = size - 1;
+
+        this.consoleLevel = consoleLevel;
+        timeZoneOffsetMillis = TimeZone.getDefault().getOffset(System.currentTimeMillis());
+        output = ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE);
+
+        if (isNull(file)) {
+            channel = null;
+        } else {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (!isNull(parent) && !parent.isDirectory() && !parent.mkdirs()) {
+                throw new GdxRuntimeException("Could not create " + parent.getPath());
+            }
+            try {
+                channel = new FileOutputStream(file, true).getChannel();
+            } catch (IOException e) {
+                throw new GdxRuntimeException("Could not open " + file.getPath(), e);
+            }
+        }
+
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "AsyncLogAppender");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Events lost because the ring was full
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    // Stops accepting events, writes what is queued and closes the file
+    @Override
+    public void dispose() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (!isNull(channel)) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Nowhere left to report it
+            }
+        }
+    }
+
+    // A free slot for the caller to format into, or null if the ring is full
+    LogEvent claim() {
+        if (!running) {
+            return null;
+        }
+
+        while (true) {
+            long sequence = tail.get();
+            if (sequence - head.get() >= events.length) {
+                dropped.incrementAndGet();
+                return null;
+            }
+            if (tail.compareAndSet(sequence, sequence + 1)) {
+                LogEvent event = events[(int) sequence & mask];
+                event.sequence = sequence;
+                return event;
+            }
+        }
+    }
+
+    void publish(LogEvent event) {
+        published.lazySet((int) event.sequence & mask, event.sequence);
+    }
+
+    private void writeLoop() {
+        while (true) {
+            boolean stopping = !running;
+            int written = drain();
+
+            if (written == 0) {
+                flush();
+                // Claims made before running was cleared are drained by one more pass
+                if (stopping && tail.get() == head.get()) {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private int drain() {
+        int count = 0;
+        long sequence = head.get();
+        int index = (int) sequence & mask;
+
+        while (published.get(index) == sequence) {
+            LogEvent event = events[index];
+            write(event);
+            echo(event);
+
+            event.throwable = null;
+            head.lazySet(++sequence);
+            index = (int) sequence & mask;
+            count++;
+        }
+
+        long lost = dropped.get();
+        if (count > 0 && lost != reportedDropped) {
+            writeNote("dropped " + (lost - reportedDropped) + " log events");
+            reportedDropped = lost;
+        }
+        return count;
+    }
+
+    private void write(LogEvent event) {
+        if (isNull(channel) || writeFailed) {
+            return;
+        }
+
+        long millisOfDay = ((event.timeMillis + timeZoneOffsetMillis) % MILLIS_PER_DAY + MILLIS_PER_DAY) % MILLIS_PER_DAY;
+        putDigits(millisOfDay / 3600000, 2);
+        putChar(':');
+        putDigits(millisOfDay / 60000 % 60, 2);
+        putChar(':');
+        putDigits(millisOfDay / 1000 % 60, 2);
+        putChar('.');
+        putDigits(millisOfDay % 1000, 3);
+        putChar(' ');
+        putString(Log.levelName(event.level));
+        putChar(' ');
+        putString(event.tag);
+        putString(": ");
+        for (int i = 0, n = event.length(); i < n; i++) {
+            putChar(event.charAt(i));
+        }
+        putChar('\n');
+
+        if (!isNull(event.throwable)) {
+            StringWriter stackTrace = new StringWriter();
+            event.throwable.printStackTrace(new PrintWriter(stackTrace));
+            putString(stackTrace.toString());
+        }
+    }
+
+    private void echo(LogEvent event) {
+        if (event.level > consoleLevel || isNull(Gdx.app)) {
+            return;
+        }
+
+        // Straight to the logger, the application's own level only applies to Gdx.app.log() calls
+        ApplicationLogger logger = Gdx.app.getApplicationLogger();
+        Log.deliver(logger, event.level, event.tag, event.getMessage(), event.throwable);
+    }
+
+    private void writeNote(String note) {
+        if (!isNull(channel)) {
+            putString("-- ");
+            putString(note);
+            putChar('\n');
+        }
+    }
+
+    private void putDigits(long value, int digits) {
+        for (long divisor = digits == 3 ? 100 : 10; divisor > 0; divisor /= 10) {
+            putChar((char) ('0' + value / divisor % 10));
+        }
+    }
+
+    private void putString(String value) {
+        String text = isNull(value) ? "null" : value;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            putChar(text.charAt(i));
+        }
+    }
+
+    // UTF-8, except that surrogate pairs are encoded half by half
+    private void putChar(char c) {
+        if (output.remaining() < 3) {
+            flush();
+        }
+
+        if (c < 0x80) {
+            output.put((byte) c);
+        } else if (c < 0x800) {
+            output.put((byte) (0xC0 | (c >> 6)));
+            output.put((byte) (0x80 | (c & 0x3F)));
+        } else {
+            output.put((byte) (0xE0 | (c >> 12)));
+            output.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+            output.put((byte) (0x80 | (c & 0x3F)));
+        }
+    }
+
+    private void flush() {
+        if (isNull(channel) || output.position() == 0) {
+            return;
+        }
+
+        output.flip();
+        try {
+            while (output.hasRemaining()) {
+                channel.write(output);
+            }
+        } catch (IOException e) {
+            // Keep the game running, the log is lost either way
+            writeFailed = true;
+        }
+        output.clear();
+    }
+}
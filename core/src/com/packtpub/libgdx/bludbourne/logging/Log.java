@@ -0,0 +1,300 @@
+package com.packtpub.libgdx.bludbourne.logging;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.ApplicationLogger;
+import com.badlogic.gdx.Gdx;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Logging for the game. The level is checked before anything else, so a message that is not logged
+ * costs one volatile read. Messages are formatted SLF4J style, every "{}" is replaced by the next
+ * argument, and the overloads take whole numbers and floats without boxing them:
+ *
+ * <pre>
+ * Log.debug(TAG, "Player Start: ({},{})", playerStart.x, playerStart.y);
+ * </pre>
+ *
+ * With an {@link AsyncLogAppender} installed the message is formatted into its ring and written off
+ * the calling thread. Without one it goes to {@code Gdx.app} right away, as before.
+ */
+public final class Log {
+
+    public static final int NONE = Application.LOG_NONE;
+    public static final int ERROR = Application.LOG_ERROR;
+    public static final int INFO = Application.LOG_INFO;
+    public static final int DEBUG = Application.LOG_DEBUG;
+
+    private static volatile int level = INFO;
+    private static volatile AsyncLogAppender appender;
+
+    // Used when there is no appender
+    private static final ThreadLocal<LogEvent> directEvent = new ThreadLocal<LogEvent>() {
+        @Override
+        protected LogEvent initialValue() {
+            return new LogEvent(null);
+        }
+    };
+
+    private Log() {
+    }
+
+    public static void setLevel(int level) {
+        Log.level = level;
+    }
+
+    public static int getLevel() {
+        return level;
+    }
+
+    public static boolean isDebugEnabled() {
+        return level >= DEBUG;
+    }
+
+    public static boolean isInfoEnabled() {
+        return level >= INFO;
+    }
+
+    // Replaces the current appender without disposing it, null to log straight to Gdx.app
+    public static void setAppender(AsyncLogAppender appender) {
+        Log.appender = appender;
+    }
+
+    public static AsyncLogAppender getAppender() {
+        return appender;
+    }
+
+    public static void debug(String tag, String message) {
+        if (level >= DEBUG) {
+            publish(begin(DEBUG, tag, message));
+        }
+    }
+
+    public static void debug(String tag, String format, Object arg) {
+        if (level >= DEBUG) {
+            LogEvent event = begin(DEBUG, tag, format);
+            if (!isNull(event)) {
+                publish(event.arg(arg));
+            }
+        }
+    }
+
+    public static void debug(String tag, String format, Object arg1, Object arg2) {
+        if (level >= DEBUG) {
+            LogEvent event = begin(DEBUG, tag, format);
+            if (!isNull(event)) {
+                publish(event.arg(arg1).arg(arg2));
+            }
+        }
+    }
+
+    public static void debug(String tag, String format, Object arg1, Object arg2, Object arg3) {
+        if (level >= DEBUG) {
+            LogEvent event = begin(DEBUG, tag, format);
+            if (!isNull(event)) {
+                publish(event.arg(arg1).arg(arg2).arg(arg3));
+            }
+        }
+    }
+
+    public static void debug(String tag, String format, long arg) {
+        if (level >= DEBUG) {
+            LogEvent event = begin(DEBUG, tag, format);
+            if (!isNull(event)) {
+                publish(event.arg(arg));
+            }
+        }
+    }
+
+    public static void debug(String tag, String format, long arg1, long arg2) {
+        if (level >= DEBUG) {
+            LogEvent event = begin(DEBUG, tag, format);
+            if (!isNull(event)) {
+                publish(event.arg(arg1).arg(arg2));
+            }
+        }
+    }
+
+    public static void debug(String tag, String format, long arg1, long arg2, long arg3) {
+        if (level >= DEBUG) {
+            LogEvent event = begin(DEBUG, tag, format);
+            if (!isNull(event)) {
+                publish(event.arg(arg1).arg(arg2).arg(arg3));
+            }
+        }
+    }
+
+    public static void debug(String tag, String format, float arg) {
+        if (level >= DEBUG) {
+            LogEvent event = begin(DEBUG, tag, format);
+            if (!isNull(event)) {
+                publish(event.arg(arg));
+            }
+        }
+    }
+
+    public static void debug(String tag, String format, float arg1, float arg2) {
+        if (level >= DEBUG) {
+            LogEvent event = begin(DEBUG, tag, format);
+            if (!isNull(event)) {
+                publish(event.arg(arg1).arg(arg2));
+            }
+        }
+    }
+
+    public static void debug(String tag, String format, float arg1, float arg2, Object arg3) {
+        if (level >= DEBUG) {
+            LogEvent event = begin(DEBUG, tag, format);
+            if (!isNull(event)) {
+                publish(event.arg(arg1).arg(arg2).arg(arg3));
+            }
+        }
+    }
+
+    public static void info(String tag, String message) {
+        if (level >= INFO) {
+            publish(begin(INFO, tag, message));
+        }
+    }
+
+    public static void info(String tag, String format, Object arg) {
+        if (level >= INFO) {
+            LogEvent event = begin(INFO, tag, format);
+            if (!isNull(event)) {
+                publish(event.arg(arg));
+            }
+        }
+    }
+
+    public static void info(String tag, String format, Object arg1, Object arg2) {
+        if (level >= INFO) {
+            LogEvent event = begin(INFO, tag, format);
+            if (!isNull(event)) {
+                publish(event.arg(arg1).arg(arg2));
+            }
+        }
+    }
+
+    public static void info(String tag, String format, long arg1, long arg2) {
+        if (level >= INFO) {
+            LogEvent event = begin(INFO, tag, format);
+            if (!isNull(event)) {
+                publish(event.arg(arg1).arg(arg2));
+            }
+        }
+    }
+
+    public static void info(String tag, String format, long arg1, long arg2, long arg3) {
+        if (level >= INFO) {
+            LogEvent event = begin(INFO, tag, format);
+            if (!isNull(event)) {
+                publish(event.arg(arg1).arg(arg2).arg(arg3));
+            }
+        }
+    }
+
+    // For the odd message with more arguments, allocates the array
+    public static void info(String tag, String format, long... args) {
+        if (level >= INFO) {
+            LogEvent event = begin(INFO, tag, format);
+            if (!isNull(event)) {
+                for (long arg : args) {
+                    event.arg(arg);
+                }
+                publish(event);
+            }
+        }
+    }
+
+    public static void error(String tag, String message) {
+        if (level >= ERROR) {
+            publish(begin(ERROR, tag, message));
+        }
+    }
+
+    public static void error(String tag, String message, Throwable throwable) {
+        if (level >= ERROR) {
+            LogEvent event = begin(ERROR, tag, message);
+            if (!isNull(event)) {
+                event.throwable = throwable;
+                publish(event);
+            }
+        }
+    }
+
+    public static void error(String tag, String format, Object arg, Throwable throwable) {
+        if (level >= ERROR) {
+            LogEvent event = begin(ERROR, tag, format);
+            if (!isNull(event)) {
+                event.throwable = throwable;
+                publish(event.arg(arg));
+            }
+        }
+    }
+
+    static String levelName(int level) {
+        switch (level) {
+            case ERROR:
+                return "ERROR";
+            case INFO:
+                return "INFO";
+            case DEBUG:
+                return "DEBUG";
+            default:
+                return "NONE";
+        }
+    }
+
+    static void deliver(ApplicationLogger logger, int level, String tag, String message, Throwable throwable) {
+        switch (level) {
+            case ERROR:
+                if (isNull(throwable)) {
+                    logger.error(tag, message);
+                } else {
+                    logger.error(tag, message, throwable);
+                }
+                break;
+            case INFO:
+                if (isNull(throwable)) {
+                    logger.log(tag, message);
+                } else {
+                    logger.log(tag, message, throwable);
+                }
+                break;
+            default:
+                if (isNull(throwable)) {
+                    logger.debug(tag, message);
+                } else {
+                    logger.debug(tag, message, throwable);
+                }
+                break;
+        }
+    }
+
+    private static LogEvent begin(int eventLevel, String tag, String format) {
+        AsyncLogAppender current = appender;
+        LogEvent event = isNull(current) ? directEvent.get() : current.claim();
+        if (!isNull(event)) {
+            event.begin(eventLevel, tag, format);
+        }
+        return event;
+    }
+
+    private static void publish(LogEvent event) {
+        if (isNull(event)) {
+            return;
+        }
+        event.end();
+
+        if (!isNull(event.owner)) {
+            event.owner.publish(event);
+            return;
+        }
+
+        // No appender, hand it to Gdx.app which applies its own level on top
+        if (!isNull(Gdx.app) && Gdx.app.getLogLevel() >= event.level) {
+            deliver(Gdx.app.getApplicationLogger(), event.level, event.tag, event.getMessage(), event.throwable);
+        }
+        event.throwable = null;
+    }
+}
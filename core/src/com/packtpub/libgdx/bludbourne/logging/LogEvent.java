@@ -0,0 +1,196 @@
+package com.packtpub.libgdx.bludbourne.logging;
+
+/**
+ * One log message, formatted in place into a fixed char array. The events live in the slots of an
+ * {@link AsyncLogAppender} or, without one, one per thread, so formatting allocates nothing for
+ * strings, whole numbers and floats. Other arguments go through {@link String#valueOf(Object)}.
+ *
+ * Messages longer than {@link #MAX_LENGTH} characters are cut off.
+ */
+public final class LogEvent {
+
+    public static final int MAX_LENGTH = 512;
+
+    // Decimals kept when printing floats, trailing zeros are dropped
+    private static final int FLOAT_DECIMALS = 3;
+    private static final long FLOAT_SCALE = 1000L;
+
+    int level;
+    String tag;
+    long timeMillis;
+    Throwable throwable;
+
+    // The appender whose ring holds this event, null for events delivered on the calling thread
+    final AsyncLogAppender owner;
+    long sequence = -1;
+
+    private final char[] text = new char[MAX_LENGTH];
+    private int length;
+
+    private String format;
+    private int formatPosition;
+
+    LogEvent(AsyncLogAppender owner) {
+        this.owner = owner;
+    }
+
+    void begin(int level, String tag, String format) {
+        this.level = level;
+        this.tag = tag;
+        this.format = format;
+        this.throwable = null;
+        timeMillis = System.currentTimeMillis();
+        formatPosition = 0;
+        length = 0;
+    }
+
+    // Copies the rest of the format, call after the last argument
+    void end() {
+        if (format != null) {
+            appendFormat(format.length());
+            format = null;
+        }
+    }
+
+    LogEvent arg(Object value) {
+        if (nextPlaceholder()) {
+            if (value instanceof CharSequence) {
+                append((CharSequence) value);
+            } else {
+                append(String.valueOf(value));
+            }
+        }
+        return this;
+    }
+
+    LogEvent arg(long value) {
+        if (nextPlaceholder()) {
+            appendLong(value);
+        }
+        return this;
+    }
+
+    LogEvent arg(float value) {
+        if (nextPlaceholder()) {
+            appendFloat(value);
+        }
+        return this;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public Throwable getThrowable() {
+        return throwable;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public char charAt(int index) {
+        return text[index];
+    }
+
+    // Allocates, only for sinks that need a String
+    public String getMessage() {
+        return new String(text, 0, length);
+    }
+
+    // Copies the format up to the next "{}" and skips it; false, with the whole format copied, if there is none
+    private boolean nextPlaceholder() {
+        if (format == null) {
+            return false;
+        }
+
+        int placeholder = format.indexOf("{}", formatPosition);
+        if (placeholder < 0) {
+            end();
+            return false;
+        }
+
+        appendFormat(placeholder);
+        formatPosition = placeholder + 2;
+        return true;
+    }
+
+    private void appendFormat(int to) {
+        for (int i = formatPosition; i < to; i++) {
+            append(format.charAt(i));
+        }
+        formatPosition = to;
+    }
+
+    private void append(char c) {
+        if (length < MAX_LENGTH) {
+            text[length++] = c;
+        }
+    }
+
+    private void append(CharSequence value) {
+        for (int i = 0, n = value.length(); i < n; i++) {
+            append(value.charAt(i));
+        }
+    }
+
+    private void appendLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            append("-9223372036854775808");
+            return;
+        }
+        if (value < 0) {
+            append('-');
+            value = -value;
+        }
+
+        // Digits come out lowest first, write them backwards
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        int end = Math.min(length + digits, MAX_LENGTH);
+        for (int i = length + digits - 1; i >= length; i--) {
+            if (i < MAX_LENGTH) {
+                text[i] = (char) ('0' + value % 10);
+            }
+            value /= 10;
+        }
+        length = end;
+    }
+
+    private void appendFloat(float value) {
+        if (Float.isNaN(value) || Float.isInfinite(value) || Math.abs(value) >= 1e15f) {
+            // Rare enough to pay for the String
+            append(Float.toString(value));
+            return;
+        }
+
+        if (value < 0 || (value == 0f && 1f / value < 0)) {
+            append('-');
+            value = -value;
+        }
+
+        long scaled = Math.round((double) value * FLOAT_SCALE);
+        appendLong(scaled / FLOAT_SCALE);
+        append('.');
+
+        long fraction = scaled % FLOAT_SCALE;
+        long divisor = FLOAT_SCALE / 10;
+        int decimals = 0;
+        do {
+            append((char) ('0' + fraction / divisor));
+            fraction %= divisor;
+            divisor /= 10;
+            decimals++;
+        } while (fraction > 0 && decimals < FLOAT_DECIMALS);
+    }
+}
@@ -0,0 +1,265 @@
+package com.packtpub.libgdx.bludbourne.maps;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Build time compiler from Tiled .tmx maps to the {@link BinaryMapFormat}. Run by the core
+ * compileMaps Gradle task with the maps directory as argument. Only plain Java is used here so
+ * it runs without a libGDX backend.
+ */
+public class BinaryMapCompiler {
+
+    private final Map<String, Integer> strings = new LinkedHashMap<>();
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: BinaryMapCompiler <maps directory> [output directory]");
+            System.exit(1);
+        }
+
+        File inputDir = new File(args[0]);
+        File outputDir = args.length > 1 ? new File(args[1]) : inputDir;
+
+        File[] sources = inputDir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(BinaryMapFormat.SOURCE_EXTENSION);
+            }
+        });
+        if (sources == null) {
+            throw new IOException("Not a directory: " + inputDir);
+        }
+
+        if (!outputDir.exists() && !outputDir.mkdirs()) {
+            throw new IOException("Could not create " + outputDir);
+        }
+
+        for (File source : sources) {
+            File target = new File(outputDir, BinaryMapFormat.compiledPathFor(source.getName()));
+            byte[] compiled = new BinaryMapCompiler().compile(source);
+            try (OutputStream out = new FileOutputStream(target)) {
+                out.write(compiled);
+            }
+            System.out.println(source.getName() + " -> " + target.getName() + " (" + compiled.length + " bytes)");
+        }
+    }
+
+    public byte[] compile(File tmxFile) throws Exception {
+        Element map = parse(tmxFile);
+
+        int width = intAttribute(map, "width", 0);
+        int height = intAttribute(map, "height", 0);
+        int tileWidth = intAttribute(map, "tilewidth", 0);
+        int tileHeight = intAttribute(map, "tileheight", 0);
+        float mapHeightInPixels = height * tileHeight;
+
+        ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream(bodyBytes);
+
+        List<Element> tilesets = childElements(map, "tileset");
+        body.writeInt(tilesets.size());
+        for (Element tileset : tilesets) {
+            Element image = childElements(tileset, "image").get(0);
+            body.writeInt(string(tileset.getAttribute("name")));
+            body.writeInt(string(resolveImagePath(tmxFile, image.getAttribute("source"))));
+            body.writeInt(intAttribute(tileset, "firstgid", 1));
+            body.writeInt(intAttribute(tileset, "tilewidth", tileWidth));
+            body.writeInt(intAttribute(tileset, "tileheight", tileHeight));
+            body.writeInt(intAttribute(tileset, "spacing", 0));
+            body.writeInt(intAttribute(tileset, "margin", 0));
+            body.writeInt(intAttribute(image, "width", 0));
+            body.writeInt(intAttribute(image, "height", 0));
+        }
+
+        List<Element> layers = new ArrayList<>();
+        NodeList children = map.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node node = children.item(i);
+            if (node instanceof Element && ("layer".equals(node.getNodeName()) || "objectgroup".equals(node.getNodeName()))) {
+                layers.add((Element) node);
+            }
+        }
+
+        body.writeInt(layers.size());
+        for (Element layer : layers) {
+            boolean tileLayer = "layer".equals(layer.getNodeName());
+            body.writeByte(tileLayer ? BinaryMapFormat.LAYER_TILE : BinaryMapFormat.LAYER_OBJECT);
+            body.writeInt(string(layer.getAttribute("name")));
+            body.writeByte(intAttribute(layer, "visible", 1));
+            body.writeFloat(floatAttribute(layer, "opacity", 1f));
+
+            if (tileLayer) {
+                writeTileData(body, layer, width * height);
+            } else {
+                writeObjects(body, layer, mapHeightInPixels);
+            }
+        }
+        body.flush();
+
+        ByteArrayOutputStream fileBytes = new ByteArrayOutputStream(bodyBytes.size() + 1024);
+        DataOutputStream out = new DataOutputStream(fileBytes);
+        out.writeInt(BinaryMapFormat.MAGIC);
+        out.writeShort(BinaryMapFormat.VERSION);
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeInt(tileWidth);
+        out.writeInt(tileHeight);
+
+        out.writeInt(strings.size());
+        for (String value : strings.keySet()) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(utf8.length);
+            out.write(utf8);
+        }
+
+        bodyBytes.writeTo(out);
+        out.flush();
+        return fileBytes.toByteArray();
+    }
+
+    private void writeTileData(DataOutputStream body, Element layer, int tileCount) throws IOException {
+        Element data = childElements(layer, "data").get(0);
+        String encoding = data.getAttribute("encoding");
+        if (!"csv".equals(encoding)) {
+            throw new IOException("Only CSV encoded tile layers are supported, got '" + encoding + "' in " + layer.getAttribute("name"));
+        }
+
+        String[] values = data.getTextContent().trim().split("\\s*,\\s*");
+        if (values.length != tileCount) {
+            throw new IOException("Layer " + layer.getAttribute("name") + " has " + values.length + " tiles, expected " + tileCount);
+        }
+
+        for (String value : values) {
+            // gids are unsigned 32 bit with the flip flags in the top bits
+            body.writeInt((int) Long.parseLong(value.trim()));
+        }
+    }
+
+    private void writeObjects(DataOutputStream body, Element layer, float mapHeightInPixels) throws IOException {
+        List<Element> objects = childElements(layer, "object");
+        body.writeInt(objects.size());
+
+        for (Element object : objects) {
+            body.writeInt(object.hasAttribute("name") ? string(object.getAttribute("name")) : BinaryMapFormat.NO_NAME);
+        }
+
+        for (Element object : objects) {
+            float x = floatAttribute(object, "x", 0f);
+            float y = floatAttribute(object, "y", 0f);
+            float width = floatAttribute(object, "width", 0f);
+            float height = floatAttribute(object, "height", 0f);
+
+            // Same conversion TmxMapLoader applies: Tiled is y-down from the top left
+            body.writeFloat(x);
+            body.writeFloat(mapHeightInPixels - y - height);
+            body.writeFloat(width);
+            body.writeFloat(height);
+        }
+    }
+
+    // Paths of the tileset images of the map relative to the assets root, the textures it depends on
+    public static List<String> tilesetImages(File tmxFile) throws Exception {
+        List<String> images = new ArrayList<>();
+        for (Element tileset : childElements(parse(tmxFile), "tileset")) {
+            images.add(resolveImagePath(tmxFile, childElements(tileset, "image").get(0).getAttribute("source")));
+        }
+        return images;
+    }
+
+    private static Element parse(File tmxFile) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        // The maps declare an external DTD on mapeditor.org, never fetch it
+        factory.setValidating(false);
+        factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        DocumentBuilder builder = factory.newDocumentBuilder();
+        Document document = builder.parse(tmxFile);
+        return document.getDocumentElement();
+    }
+
+    // Tileset images are stored relative to the assets root, matching the on-disk case of every
+    // path segment so the maps load on case sensitive file systems too
+    private static String resolveImagePath(File tmxFile, String source) throws IOException {
+        File mapsDir = tmxFile.getAbsoluteFile().getParentFile();
+        File assetsDir = mapsDir.getParentFile();
+
+        File current = mapsDir;
+        for (String segment : source.replace('\\', '/').split("/")) {
+            if (segment.isEmpty() || ".".equals(segment)) {
+                continue;
+            }
+            if ("..".equals(segment)) {
+                current = current.getParentFile();
+                continue;
+            }
+
+            File next = new File(current, segment);
+            if (!next.exists()) {
+                String[] siblings = current.list();
+                if (siblings != null) {
+                    for (String sibling : siblings) {
+                        if (sibling.equalsIgnoreCase(segment)) {
+                            next = new File(current, sibling);
+                            break;
+                        }
+                    }
+                }
+            }
+            current = next;
+        }
+
+        if (!current.exists()) {
+            throw new IOException("Tileset image not found: " + source + " in " + tmxFile.getName());
+        }
+
+        return assetsDir.toURI().relativize(current.toURI()).getPath();
+    }
+
+    private int string(String value) {
+        Integer index = strings.get(value);
+        if (index == null) {
+            index = strings.size();
+            strings.put(value, index);
+        }
+        return index;
+    }
+
+    private static List<Element> childElements(Element parent, String name) {
+        List<Element> result = new ArrayList<>();
+        NodeList children = parent.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node node = children.item(i);
+            if (node instanceof Element && name.equals(node.getNodeName())) {
+                result.add((Element) node);
+            }
+        }
+        return result;
+    }
+
+    private static int intAttribute(Element element, String name, int defaultValue) {
+        String value = element.getAttribute(name);
+        return value.isEmpty() ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static float floatAttribute(Element element, String name, float defaultValue) {
+        String value = element.getAttribute(name);
+        return value.isEmpty() ? defaultValue : Float.parseFloat(value);
+    }
+}
@@ -0,0 +1,56 @@
+package com.packtpub.libgdx.bludbourne.maps;
+
+/**
+ * Layout of the compiled .bmap files written by {@link BinaryMapCompiler} and read by {@link BinaryMapLoader}.
+ * All values are big endian.
+ *
+ * <pre>
+ * int     magic, short version
+ * int     map width, map height (tiles), tile width, tile height (pixels)
+ * int     string count, then per string: short byte length + UTF-8 bytes
+ * int     tileset count, then per tileset:
+ *         name, image path (string indices), first gid, tile width, tile height,
+ *         spacing, margin, image width, image height
+ * int     layer count, then per layer:
+ *         byte kind, int name (string index), byte visible, float opacity
+ *         TILE:   int[width * height] gids with the Tiled flip flags, top row first
+ *         OBJECT: int object count, int[count] names (string index or -1),
+ *                 float[count * 4] x, y, width, height already flipped to y-up pixels
+ * </pre>
+ */
+public final class BinaryMapFormat {
+
+    public static final int MAGIC = 0x424D4150; // "BMAP"
+    public static final short VERSION = 1;
+
+    public static final String EXTENSION = ".bmap";
+    public static final String SOURCE_EXTENSION = ".tmx";
+
+    public static final byte LAYER_TILE = 0;
+    public static final byte LAYER_OBJECT = 1;
+
+    public static final int NO_NAME = -1;
+
+    // Same bits Tiled stores in the high end of every gid
+    public static final int FLAG_FLIP_HORIZONTALLY = 0x80000000;
+    public static final int FLAG_FLIP_VERTICALLY = 0x40000000;
+    public static final int FLAG_FLIP_DIAGONALLY = 0x20000000;
+    public static final int MASK_CLEAR = 0xE0000000;
+
+    private BinaryMapFormat() {
+    }
+
+    public static String compiledPathFor(String sourcePath) {
+        if (sourcePath.endsWith(SOURCE_EXTENSION)) {
+            return sourcePath.substring(0, sourcePath.length() - SOURCE_EXTENSION.length()) + EXTENSION;
+        }
+        return sourcePath;
+    }
+
+    public static String sourcePathFor(String compiledPath) {
+        if (compiledPath.endsWith(EXTENSION)) {
+            return compiledPath.substring(0, compiledPath.length() - EXTENSION.length()) + SOURCE_EXTENSION;
+        }
+        return compiledPath;
+    }
+}
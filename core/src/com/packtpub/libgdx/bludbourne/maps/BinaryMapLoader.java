@@ -0,0 +1,358 @@
+package com.packtpub.libgdx.bludbourne.maps;
+
+import com.badlogic.gdx.Files;
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.assets.AssetLoaderParameters;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.AsynchronousAssetLoader;
+import com.badlogic.gdx.assets.loaders.FileHandleResolver;
+import com.badlogic.gdx.assets.loaders.TextureLoader;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.objects.RectangleMapObject;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTile;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.maps.tiled.TiledMapTileSet;
+import com.badlogic.gdx.maps.tiled.tiles.StaticTiledMapTile;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntIntMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Loads the compiled .bmap maps produced by {@link BinaryMapCompiler}. Files on disk are memory
+ * mapped, everything else is copied once into a direct buffer. Tile and object data are read in
+ * bulk from the buffer, so no XML or per-tile Strings are involved.
+ */
+public class BinaryMapLoader extends AsynchronousAssetLoader<TiledMap, BinaryMapLoader.Parameters> {
+
+    public static class Parameters extends AssetLoaderParameters<TiledMap> {
+        public Texture.TextureFilter textureMinFilter = Texture.TextureFilter.Nearest;
+        public Texture.TextureFilter textureMagFilter = Texture.TextureFilter.Nearest;
+        // Headless runs skip the tileset textures, tiles then have no texture region
+        public boolean loadTextures = true;
+        // Tile layers as CompactTiledMapTileLayer, false gives a Cell object per tile
+        public boolean compactTileLayers = true;
+    }
+
+    private static final int TILESET_FIELDS = 9;
+
+    // State of the map currently being loaded, the AssetManager runs one task per loader at a time
+    private ByteBuffer buffer;
+    private String[] strings;
+    private int mapWidth;
+    private int mapHeight;
+    private int tileWidth;
+    private int tileHeight;
+    private int[] tilesets;
+    private int[] gids = new int[0];
+    // Palette index of every gid in the layer being read
+    private final IntIntMap cellIndices = new IntIntMap();
+    private TiledMap map;
+
+    public BinaryMapLoader(FileHandleResolver resolver) {
+        super(resolver);
+    }
+
+    // The raw array is the loader signature's, the descriptors themselves are typed
+    @SuppressWarnings("rawtypes")
+    @Override
+    public Array<AssetDescriptor> getDependencies(String fileName, FileHandle file, Parameters parameter) {
+        readHeader(file);
+
+        Array<AssetDescriptor> dependencies = new Array<>();
+        if (parameter != null && !parameter.loadTextures) {
+            return dependencies;
+        }
+
+        TextureLoader.TextureParameter textureParameter = new TextureLoader.TextureParameter();
+        if (parameter != null) {
+            textureParameter.minFilter = parameter.textureMinFilter;
+            textureParameter.magFilter = parameter.textureMagFilter;
+        } else {
+            textureParameter.minFilter = Texture.TextureFilter.Nearest;
+            textureParameter.magFilter = Texture.TextureFilter.Nearest;
+        }
+
+        for (int i = 0; i < tilesetCount(); i++) {
+            String imagePath = strings[tilesets[i * TILESET_FIELDS + 1]];
+            AssetDescriptor<Texture> texture = new AssetDescriptor<>(resolve(imagePath), Texture.class, textureParameter);
+            dependencies.add(texture);
+        }
+        return dependencies;
+    }
+
+    @Override
+    public void loadAsync(AssetManager manager, String fileName, FileHandle file, Parameters parameter) {
+        map = new TiledMap();
+        map.getProperties().put("width", mapWidth);
+        map.getProperties().put("height", mapHeight);
+        map.getProperties().put("tilewidth", tileWidth);
+        map.getProperties().put("tileheight", tileHeight);
+
+        boolean loadTextures = parameter == null || parameter.loadTextures;
+        boolean compactTileLayers = parameter == null || parameter.compactTileLayers;
+        for (int i = 0; i < tilesetCount(); i++) {
+            Texture texture = null;
+            if (loadTextures) {
+                texture = manager.get(resolve(strings[tilesets[i * TILESET_FIELDS + 1]]).path(), Texture.class);
+            }
+            map.getTileSets().addTileSet(createTileSet(i, texture));
+        }
+
+        int layerCount = buffer.getInt();
+        for (int i = 0; i < layerCount; i++) {
+            byte kind = buffer.get();
+            String name = strings[buffer.getInt()];
+            boolean visible = buffer.get() != 0;
+            float opacity = buffer.getFloat();
+
+            MapLayer layer;
+            if (kind == BinaryMapFormat.LAYER_TILE) {
+                layer = compactTileLayers ? readCompactTileLayer() : readTileLayer();
+            } else if (kind == BinaryMapFormat.LAYER_OBJECT) {
+                layer = readObjectLayer();
+            } else {
+                throw new GdxRuntimeException("Unknown layer kind " + kind + " in " + fileName);
+            }
+
+            layer.setName(name);
+            layer.setVisible(visible);
+            layer.setOpacity(opacity);
+            map.getLayers().add(layer);
+        }
+    }
+
+    @Override
+    public TiledMap loadSync(AssetManager manager, String fileName, FileHandle file, Parameters parameter) {
+        TiledMap loaded = map;
+        map = null;
+        buffer = null;
+        strings = null;
+        tilesets = null;
+        return loaded;
+    }
+
+    private void readHeader(FileHandle file) {
+        buffer = readBuffer(file);
+
+        if (buffer.getInt() != BinaryMapFormat.MAGIC) {
+            throw new GdxRuntimeException("Not a compiled map: " + file.path());
+        }
+        short version = buffer.getShort();
+        if (version != BinaryMapFormat.VERSION) {
+            throw new GdxRuntimeException("Unsupported map version " + version + " in " + file.path() + ", recompile the maps");
+        }
+
+        mapWidth = buffer.getInt();
+        mapHeight = buffer.getInt();
+        tileWidth = buffer.getInt();
+        tileHeight = buffer.getInt();
+
+        strings = new String[buffer.getInt()];
+        byte[] utf8 = new byte[64];
+        for (int i = 0; i < strings.length; i++) {
+            int length = buffer.getShort() & 0xFFFF;
+            if (utf8.length < length) {
+                utf8 = new byte[length];
+            }
+            buffer.get(utf8, 0, length);
+            strings[i] = new String(utf8, 0, length, StandardCharsets.UTF_8);
+        }
+
+        tilesets = new int[buffer.getInt() * TILESET_FIELDS];
+        buffer.asIntBuffer().get(tilesets);
+        buffer.position(buffer.position() + tilesets.length * 4);
+    }
+
+    private TiledMapTileSet createTileSet(int index, Texture texture) {
+        int offset = index * TILESET_FIELDS;
+        int firstGid = tilesets[offset + 2];
+        int setTileWidth = tilesets[offset + 3];
+        int setTileHeight = tilesets[offset + 4];
+        int spacing = tilesets[offset + 5];
+        int margin = tilesets[offset + 6];
+
+        TiledMapTileSet tileSet = new TiledMapTileSet();
+        tileSet.setName(strings[tilesets[offset]]);
+        tileSet.getProperties().put("firstgid", firstGid);
+
+        // Without a texture, fall back to the image size recorded by the compiler
+        int imageWidth = texture != null ? texture.getWidth() : tilesets[offset + 7];
+        int imageHeight = texture != null ? texture.getHeight() : tilesets[offset + 8];
+        int stopWidth = imageWidth - setTileWidth;
+        int stopHeight = imageHeight - setTileHeight;
+        int id = firstGid;
+
+        for (int y = margin; y <= stopHeight; y += setTileHeight + spacing) {
+            for (int x = margin; x <= stopWidth; x += setTileWidth + spacing) {
+                TextureRegion region = texture != null ? new TextureRegion(texture, x, y, setTileWidth, setTileHeight) : null;
+                TiledMapTile tile = new StaticTiledMapTile(region);
+                tile.setId(id);
+                tileSet.putTile(id++, tile);
+            }
+        }
+
+        return tileSet;
+    }
+
+    private TiledMapTileLayer readTileLayer() {
+        readGids();
+
+        TiledMapTileLayer layer = new TiledMapTileLayer(mapWidth, mapHeight, tileWidth, tileHeight);
+        for (int y = 0; y < mapHeight; y++) {
+            for (int x = 0; x < mapWidth; x++) {
+                int gid = gids[y * mapWidth + x];
+                if (gid == 0) {
+                    continue;
+                }
+
+                TiledMapTile tile = map.getTileSets().getTile(gid & ~BinaryMapFormat.MASK_CLEAR);
+                if (tile == null) {
+                    continue;
+                }
+
+                TiledMapTileLayer.Cell cell = createCell(
+                        (gid & BinaryMapFormat.FLAG_FLIP_HORIZONTALLY) != 0,
+                        (gid & BinaryMapFormat.FLAG_FLIP_VERTICALLY) != 0,
+                        (gid & BinaryMapFormat.FLAG_FLIP_DIAGONALLY) != 0);
+                cell.setTile(tile);
+                // Rows are stored top first, libGDX counts from the bottom
+                layer.setCell(x, mapHeight - 1 - y, cell);
+            }
+        }
+        return layer;
+    }
+
+    // Tiles with the same gid share one cell
+    private TiledMapTileLayer readCompactTileLayer() {
+        readGids();
+
+        CompactTiledMapTileLayer layer = new CompactTiledMapTileLayer(mapWidth, mapHeight, tileWidth, tileHeight);
+        cellIndices.clear();
+        for (int y = 0; y < mapHeight; y++) {
+            for (int x = 0; x < mapWidth; x++) {
+                int gid = gids[y * mapWidth + x];
+                if (gid == 0) {
+                    continue;
+                }
+
+                int index = cellIndices.get(gid, -1);
+                if (index < 0) {
+                    TiledMapTile tile = map.getTileSets().getTile(gid & ~BinaryMapFormat.MASK_CLEAR);
+                    if (tile == null) {
+                        index = 0;
+                    } else {
+                        TiledMapTileLayer.Cell cell = createCell(
+                                (gid & BinaryMapFormat.FLAG_FLIP_HORIZONTALLY) != 0,
+                                (gid & BinaryMapFormat.FLAG_FLIP_VERTICALLY) != 0,
+                                (gid & BinaryMapFormat.FLAG_FLIP_DIAGONALLY) != 0);
+                        cell.setTile(tile);
+                        index = layer.addCell(cell);
+                    }
+                    cellIndices.put(gid, index);
+                }
+
+                // Rows are stored top first, libGDX counts from the bottom
+                layer.setCellIndex(x, mapHeight - 1 - y, index);
+            }
+        }
+        return layer;
+    }
+
+    private void readGids() {
+        int tileCount = mapWidth * mapHeight;
+        if (gids.length < tileCount) {
+            gids = new int[tileCount];
+        }
+        buffer.asIntBuffer().get(gids, 0, tileCount);
+        buffer.position(buffer.position() + tileCount * 4);
+    }
+
+    private MapLayer readObjectLayer() {
+        int count = buffer.getInt();
+
+        int[] names = new int[count];
+        buffer.asIntBuffer().get(names);
+        buffer.position(buffer.position() + count * 4);
+
+        float[] bounds = new float[count * 4];
+        buffer.asFloatBuffer().get(bounds);
+        buffer.position(buffer.position() + bounds.length * 4);
+
+        MapLayer layer = new MapLayer();
+        for (int i = 0; i < count; i++) {
+            int offset = i * 4;
+            RectangleMapObject object = new RectangleMapObject(bounds[offset], bounds[offset + 1], bounds[offset + 2], bounds[offset + 3]);
+            // Unnamed objects get a null name, same as with TmxMapLoader
+            object.setName(names[i] != BinaryMapFormat.NO_NAME ? strings[names[i]] : null);
+            layer.getObjects().add(object);
+        }
+        return layer;
+    }
+
+    private int tilesetCount() {
+        return tilesets.length / TILESET_FIELDS;
+    }
+
+    // Mirrors the flag handling of the TMX loader
+    private static TiledMapTileLayer.Cell createCell(boolean flipHorizontally, boolean flipVertically, boolean flipDiagonally) {
+        TiledMapTileLayer.Cell cell = new TiledMapTileLayer.Cell();
+        if (flipDiagonally) {
+            if (flipHorizontally && flipVertically) {
+                cell.setFlipHorizontally(true);
+                cell.setRotation(TiledMapTileLayer.Cell.ROTATE_270);
+            } else if (flipHorizontally) {
+                cell.setRotation(TiledMapTileLayer.Cell.ROTATE_270);
+            } else if (flipVertically) {
+                cell.setRotation(TiledMapTileLayer.Cell.ROTATE_90);
+            } else {
+                cell.setFlipVertically(true);
+                cell.setRotation(TiledMapTileLayer.Cell.ROTATE_270);
+            }
+        } else {
+            cell.setFlipHorizontally(flipHorizontally);
+            cell.setFlipVertically(flipVertically);
+        }
+        return cell;
+    }
+
+    static ByteBuffer readBuffer(FileHandle file) {
+        // Uncompiled maps are compiled in memory, e.g. for headless runs before compileMaps
+        if (file.extension().equals(BinaryMapFormat.SOURCE_EXTENSION.substring(1))) {
+            try {
+                return ByteBuffer.wrap(new BinaryMapCompiler().compile(file.file()));
+            } catch (Exception e) {
+                throw new GdxRuntimeException("Could not compile " + file.path(), e);
+            }
+        }
+
+        if (file.type() != Files.FileType.Classpath) {
+            File onDisk = file.file();
+            if (onDisk.isFile()) {
+                try (RandomAccessFile randomAccessFile = new RandomAccessFile(onDisk, "r");
+                     FileChannel channel = randomAccessFile.getChannel()) {
+                    return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                } catch (IOException e) {
+                    throw new GdxRuntimeException("Could not map " + file.path(), e);
+                }
+            }
+        }
+
+        // Packaged assets (jar, apk) cannot be mapped
+        byte[] bytes = file.readBytes();
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes);
+        direct.flip();
+        return direct;
+    }
+}
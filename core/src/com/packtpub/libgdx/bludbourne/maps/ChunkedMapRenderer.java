@@ -0,0 +1,413 @@
+package com.packtpub.libgdx.bludbourne.maps;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.SpriteCache;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.maps.MapRenderer;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTile;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.packtpub.libgdx.bludbourne.logging.Log;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Orthogonal tile map renderer for maps whose tile layers never change. The map is cut into square
+ * chunks of tiles and the visible tile layers of every chunk are baked once into a {@link SpriteCache}.
+ * Each frame only the chunks overlapping the view are drawn, so the cost follows the size of the
+ * view rather than the size of the map.
+ *
+ * Cells are baked as they are when the map is set: layer visibility and opacity and the current
+ * frame of animated tiles. Call {@link #invalidate()} after changing them.
+ */
+public class ChunkedMapRenderer implements MapRenderer, Disposable {
+
+    private static final String TAG = ChunkedMapRenderer.class.getSimpleName();
+
+    public static final int DEFAULT_CHUNK_TILES = 16;
+
+    // SpriteCache limit when drawing with indices
+    private static final int MAX_SPRITES_PER_CACHE = 8191;
+
+    private static final int VERTEX_SIZE = 5;
+    private static final int SPRITE_SIZE = 4 * VERTEX_SIZE;
+
+    private static final int X1 = 0, Y1 = 1, C1 = 2, U1 = 3, V1 = 4;
+    private static final int X2 = 5, Y2 = 6, C2 = 7, U2 = 8, V2 = 9;
+    private static final int X3 = 10, Y3 = 11, C3 = 12, U3 = 13, V3 = 14;
+    private static final int X4 = 15, Y4 = 16, C4 = 17, U4 = 18, V4 = 19;
+
+    private final float unitScale;
+    private final int chunkTiles;
+    private final Batch batch;
+    private final Rectangle viewBounds = new Rectangle();
+    private final Matrix4 projection = new Matrix4();
+    private final float[] vertices = new float[SPRITE_SIZE];
+
+    private TiledMap map;
+    private boolean dirty;
+
+    private final Array<SpriteCache> caches = new Array<>();
+    // Per chunk, row major: which cache holds it and its cache id, -1 when the chunk is empty
+    private int[] chunkCache = new int[0];
+    private int[] chunkIds = new int[0];
+    private int chunkColumns;
+    private int chunkRows;
+    private float chunkWidth;
+    private float chunkHeight;
+
+    private int lastVisibleChunks;
+
+    public ChunkedMapRenderer(TiledMap map, float unitScale) {
+        this(map, unitScale, DEFAULT_CHUNK_TILES);
+    }
+
+    public ChunkedMapRenderer(TiledMap map, float unitScale, int chunkTiles) {
+        this.unitScale = unitScale;
+        this.chunkTiles = Math.max(1, chunkTiles);
+        this.batch = new SpriteBatch();
+        setMap(map);
+    }
+
+    public void setMap(TiledMap map) {
+        this.map = map;
+        dirty = true;
+    }
+
+    public TiledMap getMap() {
+        return map;
+    }
+
+    // Rebakes the chunks before the next render
+    public void invalidate() {
+        dirty = true;
+    }
+
+    // For drawing sprites on top of the map with the same projection, see render()
+    public Batch getBatch() {
+        return batch;
+    }
+
+    public Rectangle getViewBounds() {
+        return viewBounds;
+    }
+
+    public int getLastVisibleChunks() {
+        return lastVisibleChunks;
+    }
+
+    public int getChunkCount() {
+        return chunkColumns * chunkRows;
+    }
+
+    @Override
+    public void setView(OrthographicCamera camera) {
+        projection.set(camera.combined);
+        float width = camera.viewportWidth * camera.zoom;
+        float height = camera.viewportHeight * camera.zoom;
+        viewBounds.set(camera.position.x - width / 2, camera.position.y - height / 2, width, height);
+    }
+
+    @Override
+    public void setView(Matrix4 projectionMatrix, float viewboundsX, float viewboundsY, float viewboundsWidth, float viewboundsHeight) {
+        projection.set(projectionMatrix);
+        viewBounds.set(viewboundsX, viewboundsY, viewboundsWidth, viewboundsHeight);
+    }
+
+    @Override
+    public void render() {
+        if (dirty) {
+            build();
+        }
+
+        batch.setProjectionMatrix(projection);
+        lastVisibleChunks = 0;
+        if (caches.size == 0) {
+            return;
+        }
+
+        // Chunks overlapping the view bounds, as a range of columns and rows
+        int firstColumn = Math.max(0, (int) Math.floor(viewBounds.x / chunkWidth));
+        int lastColumn = Math.min(chunkColumns - 1, (int) Math.floor((viewBounds.x + viewBounds.width) / chunkWidth));
+        int firstRow = Math.max(0, (int) Math.floor(viewBounds.y / chunkHeight));
+        int lastRow = Math.min(chunkRows - 1, (int) Math.floor((viewBounds.y + viewBounds.height) / chunkHeight));
+        if (firstColumn > lastColumn || firstRow > lastRow) {
+            return;
+        }
+
+        // SpriteCache leaves blending alone, upper layers need it for their transparent texels and opacity
+        Gdx.gl.glEnable(GL20.GL_BLEND);
+        Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+
+        // Chunks do not overlap, so drawing them cache by cache keeps the layer order intact
+        for (int c = 0; c < caches.size; c++) {
+            SpriteCache cache = caches.get(c);
+            boolean begun = false;
+
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    int chunk = row * chunkColumns + column;
+                    if (chunkCache[chunk] != c) {
+                        continue;
+                    }
+
+                    if (!begun) {
+                        cache.setProjectionMatrix(projection);
+                        cache.begin();
+                        begun = true;
+                    }
+                    cache.draw(chunkIds[chunk]);
+                    lastVisibleChunks++;
+                }
+            }
+
+            if (begun) {
+                cache.end();
+            }
+        }
+
+        Gdx.gl.glDisable(GL20.GL_BLEND);
+    }
+
+    // Layers are baked together per chunk, so this always draws every visible tile layer
+    @Override
+    public void render(int[] layers) {
+        render();
+    }
+
+    @Override
+    public void dispose() {
+        disposeCaches();
+        batch.dispose();
+    }
+
+    private void build() {
+        dirty = false;
+        disposeCaches();
+        chunkColumns = 0;
+        chunkRows = 0;
+
+        if (isNull(map)) {
+            return;
+        }
+
+        Array<TiledMapTileLayer> layers = map.getLayers().getByType(TiledMapTileLayer.class);
+        int mapWidth = 0;
+        int mapHeight = 0;
+        float tileWidth = 0;
+        float tileHeight = 0;
+        for (int i = 0; i < layers.size; i++) {
+            TiledMapTileLayer layer = layers.get(i);
+            mapWidth = Math.max(mapWidth, layer.getWidth());
+            mapHeight = Math.max(mapHeight, layer.getHeight());
+            tileWidth = Math.max(tileWidth, layer.getTileWidth());
+            tileHeight = Math.max(tileHeight, layer.getTileHeight());
+        }
+        if (mapWidth == 0 || mapHeight == 0) {
+            return;
+        }
+
+        chunkColumns = (mapWidth + chunkTiles - 1) / chunkTiles;
+        chunkRows = (mapHeight + chunkTiles - 1) / chunkTiles;
+        chunkWidth = chunkTiles * tileWidth * unitScale;
+        chunkHeight = chunkTiles * tileHeight * unitScale;
+
+        int chunkCount = chunkColumns * chunkRows;
+        chunkCache = new int[chunkCount];
+        chunkIds = new int[chunkCount];
+
+        // Size the caches up front: a chunk never spans two caches
+        int[] spriteCounts = new int[chunkCount];
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            spriteCounts[chunk] = countSprites(layers, chunk);
+        }
+
+        int first = 0;
+        while (first < chunkCount) {
+            if (spriteCounts[first] > MAX_SPRITES_PER_CACHE) {
+                throw new GdxRuntimeException("Chunk " + first + " has " + spriteCounts[first] + " tiles, more than a cache holds; use a smaller chunk size");
+            }
+
+            int sprites = 0;
+            int last = first;
+            while (last < chunkCount && sprites + spriteCounts[last] <= MAX_SPRITES_PER_CACHE) {
+                sprites += spriteCounts[last++];
+            }
+
+            SpriteCache cache = new SpriteCache(Math.max(1, sprites), true);
+            for (int chunk = first; chunk < last; chunk++) {
+                if (spriteCounts[chunk] == 0) {
+                    chunkCache[chunk] = -1;
+                    continue;
+                }
+
+                cache.beginCache();
+                bakeChunk(cache, layers, chunk);
+                chunkIds[chunk] = cache.endCache();
+                chunkCache[chunk] = caches.size;
+            }
+            caches.add(cache);
+            first = last;
+        }
+
+        Log.debug(TAG, "Baked {} chunks into {} caches", chunkCount, caches.size);
+    }
+
+    private int countSprites(Array<TiledMapTileLayer> layers, int chunk) {
+        int count = 0;
+        for (int i = 0; i < layers.size; i++) {
+            TiledMapTileLayer layer = layers.get(i);
+            if (!layer.isVisible()) {
+                continue;
+            }
+
+            int startColumn = (chunk % chunkColumns) * chunkTiles;
+            int startRow = (chunk / chunkColumns) * chunkTiles;
+            int endColumn = Math.min(layer.getWidth(), startColumn + chunkTiles);
+            int endRow = Math.min(layer.getHeight(), startRow + chunkTiles);
+            for (int row = startRow; row < endRow; row++) {
+                for (int column = startColumn; column < endColumn; column++) {
+                    TiledMapTileLayer.Cell cell = layer.getCell(column, row);
+                    if (!isNull(cell) && !isNull(cell.getTile()) && !isNull(cell.getTile().getTextureRegion())) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    // Same vertex layout, offsets, flips and rotations as OrthogonalTiledMapRenderer
+    private void bakeChunk(SpriteCache cache, Array<TiledMapTileLayer> layers, int chunk) {
+        for (int i = 0; i < layers.size; i++) {
+            TiledMapTileLayer layer = layers.get(i);
+            if (!layer.isVisible()) {
+                continue;
+            }
+
+            float color = Color.toFloatBits(1f, 1f, 1f, layer.getOpacity());
+            float layerTileWidth = layer.getTileWidth() * unitScale;
+            float layerTileHeight = layer.getTileHeight() * unitScale;
+            float layerOffsetX = layer.getOffsetX() * unitScale;
+            float layerOffsetY = -layer.getOffsetY() * unitScale;
+
+            int startColumn = (chunk % chunkColumns) * chunkTiles;
+            int startRow = (chunk / chunkColumns) * chunkTiles;
+            int endColumn = Math.min(layer.getWidth(), startColumn + chunkTiles);
+            int endRow = Math.min(layer.getHeight(), startRow + chunkTiles);
+
+            for (int row = startRow; row < endRow; row++) {
+                for (int column = startColumn; column < endColumn; column++) {
+                    TiledMapTileLayer.Cell cell = layer.getCell(column, row);
+                    if (isNull(cell)) {
+                        continue;
+                    }
+                    TiledMapTile tile = cell.getTile();
+                    if (isNull(tile) || isNull(tile.getTextureRegion())) {
+                        continue;
+                    }
+
+                    TextureRegion region = tile.getTextureRegion();
+                    float x1 = column * layerTileWidth + tile.getOffsetX() * unitScale + layerOffsetX;
+                    float y1 = row * layerTileHeight + tile.getOffsetY() * unitScale + layerOffsetY;
+                    float x2 = x1 + region.getRegionWidth() * unitScale;
+                    float y2 = y1 + region.getRegionHeight() * unitScale;
+
+                    setVertices(x1, y1, x2, y2, color, region, cell);
+                    cache.add(region.getTexture(), vertices, 0, SPRITE_SIZE);
+                }
+            }
+        }
+    }
+
+    private void setVertices(float x1, float y1, float x2, float y2, float color, TextureRegion region, TiledMapTileLayer.Cell cell) {
+        float u1 = region.getU();
+        float v1 = region.getV2();
+        float u2 = region.getU2();
+        float v2 = region.getV();
+
+        vertices[X1] = x1;
+        vertices[Y1] = y1;
+        vertices[C1] = color;
+        vertices[U1] = u1;
+        vertices[V1] = v1;
+
+        vertices[X2] = x1;
+        vertices[Y2] = y2;
+        vertices[C2] = color;
+        vertices[U2] = u1;
+        vertices[V2] = v2;
+
+        vertices[X3] = x2;
+        vertices[Y3] = y2;
+        vertices[C3] = color;
+        vertices[U3] = u2;
+        vertices[V3] = v2;
+
+        vertices[X4] = x2;
+        vertices[Y4] = y1;
+        vertices[C4] = color;
+        vertices[U4] = u2;
+        vertices[V4] = v1;
+
+        if (cell.getFlipHorizontally()) {
+            swap(U1, U3);
+            swap(U2, U4);
+        }
+        if (cell.getFlipVertically()) {
+            swap(V1, V3);
+            swap(V2, V4);
+        }
+
+        switch (cell.getRotation()) {
+            case TiledMapTileLayer.Cell.ROTATE_90:
+                rotate(V1, V2, V3, V4);
+                rotate(U1, U2, U3, U4);
+                break;
+            case TiledMapTileLayer.Cell.ROTATE_180:
+                swap(U1, U3);
+                swap(U2, U4);
+                swap(V1, V3);
+                swap(V2, V4);
+                break;
+            case TiledMapTileLayer.Cell.ROTATE_270:
+                rotate(V1, V4, V3, V2);
+                rotate(U1, U4, U3, U2);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void swap(int a, int b) {
+        float temp = vertices[a];
+        vertices[a] = vertices[b];
+        vertices[b] = temp;
+    }
+
+    // Moves every value one place back: a takes b, b takes c, c takes d and d takes a
+    private void rotate(int a, int b, int c, int d) {
+        float temp = vertices[a];
+        vertices[a] = vertices[b];
+        vertices[b] = vertices[c];
+        vertices[c] = vertices[d];
+        vertices[d] = temp;
+    }
+
+    private void disposeCaches() {
+        for (int i = 0; i < caches.size; i++) {
+            caches.get(i).dispose();
+        }
+        caches.clear();
+    }
+}
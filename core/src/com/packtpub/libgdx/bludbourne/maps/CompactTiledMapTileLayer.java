@@ -0,0 +1,119 @@
+package com.packtpub.libgdx.bludbourne.maps;
+
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * A tile layer that stores a 16 bit index per tile instead of a {@link TiledMapTileLayer.Cell} object.
+ * Every distinct cell of the layer, a tile with its flip and rotation, exists once in a palette, and
+ * {@link #getCell(int, int)} hands out that shared instance, so callers must not modify it.
+ *
+ * Indices are kept in 16x16 tile chunks and chunks without any tile are not allocated, so a fully
+ * populated layer costs two bytes a tile and a mostly empty decoration layer next to nothing.
+ */
+public class CompactTiledMapTileLayer extends TiledMapTileLayer {
+
+    private static final int CHUNK_SHIFT = 4;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // Index 0 is the empty cell
+    public static final int MAX_CELLS = 0xFFFF;
+
+    private final int width;
+    private final int height;
+    private final int chunksX;
+    private final short[][] chunks;
+    private final Array<Cell> palette;
+
+    public CompactTiledMapTileLayer(int width, int height, int tileWidth, int tileHeight) {
+        // The parent's cell array is never used, keep it empty
+        super(0, 0, tileWidth, tileHeight);
+        this.width = width;
+        this.height = height;
+        chunksX = (width + CHUNK_MASK) >> CHUNK_SHIFT;
+        chunks = new short[chunksX * ((height + CHUNK_MASK) >> CHUNK_SHIFT)][];
+        palette = new Array<>();
+        palette.add(null);
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public Cell getCell(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return null;
+        }
+
+        short[] chunk = chunks[(y >> CHUNK_SHIFT) * chunksX + (x >> CHUNK_SHIFT)];
+        if (chunk == null) {
+            return null;
+        }
+        return palette.get(chunk[(y & CHUNK_MASK) << CHUNK_SHIFT | (x & CHUNK_MASK)] & 0xFFFF);
+    }
+
+    @Override
+    public void setCell(int x, int y, Cell cell) {
+        int index = cell == null ? 0 : palette.indexOf(cell, true);
+        if (index < 0) {
+            index = addCell(cell);
+        }
+        setCellIndex(x, y, index);
+    }
+
+    // Adds a cell to the palette and returns the index to set tiles to, see setCellIndex()
+    public int addCell(Cell cell) {
+        if (palette.size > MAX_CELLS) {
+            throw new GdxRuntimeException("More than " + MAX_CELLS + " distinct cells in layer " + getName());
+        }
+        palette.add(cell);
+        return palette.size - 1;
+    }
+
+    // Index from addCell(), 0 clears the tile
+    public void setCellIndex(int x, int y, int index) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return;
+        }
+
+        int chunkIndex = (y >> CHUNK_SHIFT) * chunksX + (x >> CHUNK_SHIFT);
+        short[] chunk = chunks[chunkIndex];
+        if (chunk == null) {
+            if (index == 0) {
+                return;
+            }
+            chunk = new short[CHUNK_SIZE * CHUNK_SIZE];
+            chunks[chunkIndex] = chunk;
+        }
+        chunk[(y & CHUNK_MASK) << CHUNK_SHIFT | (x & CHUNK_MASK)] = (short) index;
+    }
+
+    // Distinct cells in the layer
+    public int getPaletteSize() {
+        return palette.size - 1;
+    }
+
+    // Chunks holding at least one tile at some point
+    public int getAllocatedChunkCount() {
+        int count = 0;
+        for (short[] chunk : chunks) {
+            if (chunk != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getChunkCount() {
+        return chunks.length;
+    }
+}
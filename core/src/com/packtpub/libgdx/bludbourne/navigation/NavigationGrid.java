@@ -0,0 +1,73 @@
+package com.packtpub.libgdx.bludbourne.navigation;
+
+import com.packtpub.libgdx.bludbourne.CollisionGrid;
+
+/**
+ * Walkability of a map at tile resolution, one bit per tile. A tile is blocked when any collision
+ * rectangle overlaps it. Tiles are indexed row by row from the bottom left, y * width + x, and are
+ * connected to their neighbours up, down, left and right, the directions entities move in.
+ */
+public class NavigationGrid {
+
+    private int width;
+    private int height;
+    private float tileWidth;
+    private float tileHeight;
+
+    private long[] blocked = new long[0];
+
+    // Sizes are in tiles and map pixels, the units of the collision layer
+    public void build(CollisionGrid collisionGrid, int width, int height, float tileWidth, float tileHeight) {
+        this.width = width;
+        this.height = height;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+
+        blocked = new long[(width * height + 63) >>> 6];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (collisionGrid.isCollision(x * tileWidth, y * tileHeight, tileWidth, tileHeight)) {
+                    int index = y * width + x;
+                    blocked[index >>> 6] |= 1L << index;
+                }
+            }
+        }
+    }
+
+    public boolean isWalkable(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return false;
+        }
+        int index = y * width + x;
+        return (blocked[index >>> 6] & (1L << index)) == 0;
+    }
+
+    // Tile column or row containing a position in map pixels
+    public int toTileX(float pixelX) {
+        return (int) Math.floor(pixelX / tileWidth);
+    }
+
+    public int toTileY(float pixelY) {
+        return (int) Math.floor(pixelY / tileHeight);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getTileCount() {
+        return width * height;
+    }
+
+    public float getTileWidth() {
+        return tileWidth;
+    }
+
+    public float getTileHeight() {
+        return tileHeight;
+    }
+}
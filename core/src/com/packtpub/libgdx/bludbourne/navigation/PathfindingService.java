@@ -0,0 +1,272 @@
+package com.packtpub.libgdx.bludbourne.navigation;
+
+import com.badlogic.gdx.utils.IntArray;
+
+import java.util.Arrays;
+
+/**
+ * A* searches over one map's {@link NavigationGrid}, with a cache of recent results. Search state
+ * lives in int arrays sized to the grid and the open list is an indexed binary heap, so searching
+ * does not allocate and nodes are invalidated by bumping a search id rather than clearing. Not
+ * thread safe, use it from the simulation thread.
+ */
+public class PathfindingService {
+
+    public static final int DEFAULT_CACHE_SIZE = 64;
+
+    private static final long EMPTY = -1L;
+
+    private final NavigationGrid grid;
+    private final int width;
+
+    // Per tile, valid while the stamp matches the current search id
+    private final int[] openedStamp;
+    private final int[] closedStamp;
+    private final int[] cost;
+    private final int[] estimate;
+    private final int[] parent;
+    private final int[] heapIndex;
+    private int searchId;
+
+    // Open tiles ordered by estimated total cost
+    private final int[] heap;
+    private int heapSize;
+
+    // Least recently used entries are replaced, recency is a use counter per entry
+    private final long[] cacheKeys;
+    private final long[] cacheUses;
+    private final boolean[] cacheFound;
+    private final IntArray[] cachePaths;
+    private long uses;
+    private int cacheHits;
+    private int cacheMisses;
+
+    public PathfindingService(NavigationGrid grid) {
+        this(grid, DEFAULT_CACHE_SIZE);
+    }
+
+    public PathfindingService(NavigationGrid grid, int cacheSize) {
+        this.grid = grid;
+        width = grid.getWidth();
+
+        int tiles = grid.getTileCount();
+        openedStamp = new int[tiles];
+        closedStamp = new int[tiles];
+        cost = new int[tiles];
+        estimate = new int[tiles];
+        parent = new int[tiles];
+        heapIndex = new int[tiles];
+        heap = new int[tiles];
+
+        int size = Math.max(1, cacheSize);
+        cacheKeys = new long[size];
+        cacheUses = new long[size];
+        cacheFound = new boolean[size];
+        cachePaths = new IntArray[size];
+        for (int i = 0; i < size; i++) {
+            cacheKeys[i] = EMPTY;
+            cachePaths[i] = new IntArray();
+        }
+    }
+
+    // Fills out with the tile indices (y * width + x) from start to end, both included
+    public boolean findPath(int startX, int startY, int endX, int endY, IntArray out) {
+        out.clear();
+        if (!grid.isWalkable(startX, startY) || !grid.isWalkable(endX, endY)) {
+            return false;
+        }
+
+        int start = startY * width + startX;
+        int end = endY * width + endX;
+        long key = ((long) start << 32) | (end & 0xffffffffL);
+
+        int entry = findEntry(key);
+        if (entry >= 0) {
+            cacheHits++;
+            cacheUses[entry] = ++uses;
+            out.addAll(cachePaths[entry]);
+            return cacheFound[entry];
+        }
+
+        cacheMisses++;
+        boolean found = search(start, end);
+        if (found) {
+            for (int tile = end; tile != -1; tile = parent[tile]) {
+                out.add(tile);
+            }
+            out.reverse();
+        }
+
+        // Misses are cached too, an unreachable target stays unreachable
+        entry = leastRecentlyUsedEntry();
+        cacheKeys[entry] = key;
+        cacheUses[entry] = ++uses;
+        cacheFound[entry] = found;
+        cachePaths[entry].clear();
+        cachePaths[entry].addAll(out);
+
+        return found;
+    }
+
+    public NavigationGrid getGrid() {
+        return grid;
+    }
+
+    public void clearCache() {
+        for (int i = 0; i < cacheKeys.length; i++) {
+            cacheKeys[i] = EMPTY;
+            cachePaths[i].clear();
+        }
+    }
+
+    public int getCacheHits() {
+        return cacheHits;
+    }
+
+    public int getCacheMisses() {
+        return cacheMisses;
+    }
+
+    private boolean search(int start, int end) {
+        if (++searchId == Integer.MAX_VALUE) {
+            Arrays.fill(openedStamp, 0);
+            Arrays.fill(closedStamp, 0);
+            searchId = 1;
+        }
+        heapSize = 0;
+
+        openedStamp[start] = searchId;
+        cost[start] = 0;
+        estimate[start] = heuristic(start, end);
+        parent[start] = -1;
+        push(start);
+
+        while (heapSize > 0) {
+            int current = pop();
+            if (current == end) {
+                return true;
+            }
+            closedStamp[current] = searchId;
+
+            int x = current % width;
+            int y = current / width;
+            relax(current, x, y + 1, end);
+            relax(current, x + 1, y, end);
+            relax(current, x, y - 1, end);
+            relax(current, x - 1, y, end);
+        }
+
+        return false;
+    }
+
+    private void relax(int from, int x, int y, int end) {
+        if (!grid.isWalkable(x, y)) {
+            return;
+        }
+
+        // Manhattan distance is consistent on a 4-connected grid, closed tiles never improve
+        int tile = y * width + x;
+        if (closedStamp[tile] == searchId) {
+            return;
+        }
+
+        int tileCost = cost[from] + 1;
+        if (openedStamp[tile] == searchId) {
+            if (tileCost >= cost[tile]) {
+                return;
+            }
+            cost[tile] = tileCost;
+            estimate[tile] = tileCost + heuristic(tile, end);
+            parent[tile] = from;
+            siftUp(heapIndex[tile]);
+        } else {
+            openedStamp[tile] = searchId;
+            cost[tile] = tileCost;
+            estimate[tile] = tileCost + heuristic(tile, end);
+            parent[tile] = from;
+            push(tile);
+        }
+    }
+
+    private int heuristic(int tile, int end) {
+        return Math.abs(tile % width - end % width) + Math.abs(tile / width - end / width);
+    }
+
+    private void push(int tile) {
+        heap[heapSize] = tile;
+        heapIndex[tile] = heapSize;
+        siftUp(heapSize++);
+    }
+
+    private int pop() {
+        int top = heap[0];
+        heap[0] = heap[--heapSize];
+        heapIndex[heap[0]] = 0;
+        siftDown(0);
+        return top;
+    }
+
+    // Ties go to the tile with the higher cost so far, it is the one closer to the end
+    private boolean before(int a, int b) {
+        return estimate[a] < estimate[b] || (estimate[a] == estimate[b] && cost[a] > cost[b]);
+    }
+
+    private void siftUp(int index) {
+        int tile = heap[index];
+        while (index > 0) {
+            int parentIndex = (index - 1) >>> 1;
+            int parentTile = heap[parentIndex];
+            if (!before(tile, parentTile)) {
+                break;
+            }
+            heap[index] = parentTile;
+            heapIndex[parentTile] = index;
+            index = parentIndex;
+        }
+        heap[index] = tile;
+        heapIndex[tile] = index;
+    }
+
+    private void siftDown(int index) {
+        int tile = heap[index];
+        while (true) {
+            int child = (index << 1) + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && before(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!before(heap[child], tile)) {
+                break;
+            }
+            heap[index] = heap[child];
+            heapIndex[heap[index]] = index;
+            index = child;
+        }
+        heap[index] = tile;
+        heapIndex[tile] = index;
+    }
+
+    private int findEntry(long key) {
+        for (int i = 0; i < cacheKeys.length; i++) {
+            if (cacheKeys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int leastRecentlyUsedEntry() {
+        int oldest = 0;
+        for (int i = 0; i < cacheKeys.length; i++) {
+            if (cacheKeys[i] == EMPTY) {
+                return i;
+            }
+            if (cacheUses[i] < cacheUses[oldest]) {
+                oldest = i;
+            }
+        }
+        return oldest;
+    }
+}
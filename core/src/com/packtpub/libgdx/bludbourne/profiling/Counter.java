@@ -0,0 +1,37 @@
+package com.packtpub.libgdx.bludbourne.profiling;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free event counter, safe to add to from any thread. {@link #drain()} reads and resets it, so
+ * every event is reported exactly once.
+ */
+public class Counter {
+
+    private final String name;
+    private final AtomicLong value = new AtomicLong();
+
+    public Counter(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void increment() {
+        value.incrementAndGet();
+    }
+
+    public void add(long amount) {
+        value.addAndGet(amount);
+    }
+
+    public long get() {
+        return value.get();
+    }
+
+    public long drain() {
+        return value.getAndSet(0);
+    }
+}
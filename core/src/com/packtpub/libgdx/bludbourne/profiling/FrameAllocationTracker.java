@@ -0,0 +1,200 @@
+package com.packtpub.libgdx.bludbourne.profiling;
+
+import com.packtpub.libgdx.bludbourne.logging.Log;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Debug instrumentation that counts the bytes allocated by the render thread and the garbage
+ * collections that ran between {@link #beginFrame()} and {@link #endFrame()}. Frames that allocate
+ * more than the budget or see a collection are logged; a summary is logged every few seconds.
+ *
+ * Allocation counts need a HotSpot style JVM, elsewhere only collections are tracked. Disabled by
+ * default, see {@link #setEnabled(boolean)}.
+ */
+public class FrameAllocationTracker {
+
+    private static final String TAG = FrameAllocationTracker.class.getSimpleName();
+
+    // Let class loading and the JIT settle before holding frames to the budget
+    public static final int DEFAULT_WARMUP_FRAMES = 300;
+    public static final int DEFAULT_SUMMARY_INTERVAL_FRAMES = 600;
+
+    private static boolean enabled = false;
+
+    private final com.sun.management.ThreadMXBean threadBean;
+    private final GarbageCollectorMXBean[] collectors;
+    private final long threadId;
+
+    // Bytes the measurement itself allocates, subtracted from every frame
+    private long overheadBytes;
+    private long allocationBudgetBytes;
+    private int warmupFrames;
+    private int summaryIntervalFrames;
+
+    private long frame;
+    private long frameStartBytes;
+    private long frameStartCollections;
+    private long frameStartCollectionMillis;
+
+    // Since the last summary
+    private long summaryFrames;
+    private long summaryAllocatingFrames;
+    private long summaryBytes;
+    private long summaryMaxBytes;
+    private long summaryCollections;
+    private long summaryCollectionMillis;
+
+    private long lastFrameBytes;
+    private long lastFrameCollections;
+
+    public static void setEnabled(boolean enabled) {
+        FrameAllocationTracker.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    // Must be created on the thread whose frames are measured
+    public FrameAllocationTracker() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            threadBean = (com.sun.management.ThreadMXBean) bean;
+            threadBean.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            threadBean = null;
+            Log.info(TAG, "Per thread allocation counting not supported, tracking collections only");
+        }
+
+        List<GarbageCollectorMXBean> beans = ManagementFactory.getGarbageCollectorMXBeans();
+        collectors = beans.toArray(new GarbageCollectorMXBean[beans.size()]);
+        threadId = Thread.currentThread().getId();
+
+        allocationBudgetBytes = 0;
+        warmupFrames = DEFAULT_WARMUP_FRAMES;
+        summaryIntervalFrames = DEFAULT_SUMMARY_INTERVAL_FRAMES;
+
+        calibrate();
+    }
+
+    public void beginFrame() {
+        frameStartCollections = collectionCount();
+        frameStartCollectionMillis = collectionMillis();
+        frameStartBytes = allocatedBytes();
+    }
+
+    public void endFrame() {
+        long bytes = Math.max(0, allocatedBytes() - frameStartBytes - overheadBytes);
+        long collections = collectionCount() - frameStartCollections;
+        long collectionMillis = collectionMillis() - frameStartCollectionMillis;
+
+        lastFrameBytes = bytes;
+        lastFrameCollections = collections;
+        frame++;
+
+        if (frame <= warmupFrames) {
+            return;
+        }
+
+        summaryFrames++;
+        summaryBytes += bytes;
+        summaryMaxBytes = Math.max(summaryMaxBytes, bytes);
+        summaryCollections += collections;
+        summaryCollectionMillis += collectionMillis;
+
+        if (bytes > allocationBudgetBytes) {
+            summaryAllocatingFrames++;
+            Log.info(TAG, "Frame {} allocated {} bytes, budget is {}", frame, bytes, allocationBudgetBytes);
+        }
+        if (collections > 0) {
+            Log.info(TAG, "Frame {} ran {} collections taking {} ms", frame, collections, collectionMillis);
+        }
+
+        if (summaryFrames >= summaryIntervalFrames) {
+            logSummary();
+        }
+    }
+
+    public void setAllocationBudgetBytes(long allocationBudgetBytes) {
+        this.allocationBudgetBytes = Math.max(0, allocationBudgetBytes);
+    }
+
+    public void setWarmupFrames(int warmupFrames) {
+        this.warmupFrames = Math.max(0, warmupFrames);
+    }
+
+    public void setSummaryIntervalFrames(int summaryIntervalFrames) {
+        this.summaryIntervalFrames = Math.max(1, summaryIntervalFrames);
+    }
+
+    public boolean isAllocationCountingSupported() {
+        return !isNull(threadBean);
+    }
+
+    public long getLastFrameBytes() {
+        return lastFrameBytes;
+    }
+
+    public long getLastFrameCollections() {
+        return lastFrameCollections;
+    }
+
+    public long getFrame() {
+        return frame;
+    }
+
+    private void logSummary() {
+        Log.info(TAG, "{} frames: {} over budget, {} bytes/frame average, {} max, {} collections taking {} ms",
+                summaryFrames, summaryAllocatingFrames, summaryBytes / summaryFrames, summaryMaxBytes,
+                summaryCollections, summaryCollectionMillis);
+
+        summaryFrames = 0;
+        summaryAllocatingFrames = 0;
+        summaryBytes = 0;
+        summaryMaxBytes = 0;
+        summaryCollections = 0;
+        summaryCollectionMillis = 0;
+    }
+
+    // Reading the counter may allocate on some JVMs, measure an empty frame to find out how much
+    private void calibrate() {
+        overheadBytes = 0;
+        if (isNull(threadBean)) {
+            return;
+        }
+
+        long smallest = Long.MAX_VALUE;
+        for (int i = 0; i < 16; i++) {
+            long start = allocatedBytes();
+            smallest = Math.min(smallest, allocatedBytes() - start);
+        }
+        overheadBytes = smallest;
+    }
+
+    private long allocatedBytes() {
+        return isNull(threadBean) ? 0 : threadBean.getThreadAllocatedBytes(threadId);
+    }
+
+    private long collectionCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private long collectionMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+}
@@ -0,0 +1,64 @@
+package com.packtpub.libgdx.bludbourne.profiling;
+
+/**
+ * The game's timing and counting probes. Probes are cheap enough to leave in: while profiling is
+ * disabled {@link #start()} returns 0 and {@link #stop(LatencyHistogram, long)} does nothing. Any thread
+ * may record, {@link ProfilerReport} reads them back.
+ *
+ * <pre>
+ * long start = Profiler.start();
+ * ...
+ * Profiler.stop(Profiler.MAP_LOAD, start);
+ * </pre>
+ */
+public final class Profiler {
+
+    public static final LatencyHistogram FRAME = new LatencyHistogram("frame");
+    public static final LatencyHistogram RENDER = new LatencyHistogram("render");
+    public static final LatencyHistogram SIMULATION_STEP = new LatencyHistogram("simulation.step");
+    public static final LatencyHistogram COLLISION_QUERY = new LatencyHistogram("collision.query");
+    public static final LatencyHistogram MAP_LOAD = new LatencyHistogram("map.load");
+    public static final LatencyHistogram ASSET_UPDATE = new LatencyHistogram("asset.update");
+
+    public static final Counter ENTITIES_UPDATED = new Counter("entities.updated");
+    public static final Counter ENTITIES_BLOCKED = new Counter("entities.blocked");
+    public static final Counter ENTITIES_SKIPPED = new Counter("entities.skipped");
+    public static final Counter ENTITY_POOL_MISSES = new Counter("entity.pool.misses");
+
+    static final LatencyHistogram[] HISTOGRAMS = {
+            FRAME, RENDER, SIMULATION_STEP, COLLISION_QUERY, MAP_LOAD, ASSET_UPDATE
+    };
+
+    static final Counter[] COUNTERS = {
+            ENTITIES_UPDATED, ENTITIES_BLOCKED, ENTITIES_SKIPPED, ENTITY_POOL_MISSES
+    };
+
+    private static volatile boolean enabled = false;
+
+    private Profiler() {
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Profiler.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    public static void stop(LatencyHistogram histogram, long start) {
+        if (start != 0L) {
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    public static void count(Counter counter, long amount) {
+        if (enabled) {
+            counter.add(amount);
+        }
+    }
+}
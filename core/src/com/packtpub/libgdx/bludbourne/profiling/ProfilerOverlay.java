@@ -0,0 +1,93 @@
+package com.packtpub.libgdx.bludbourne.profiling;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.GlyphLayout;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.StringBuilder;
+
+/**
+ * Draws the last interval of a {@link ProfilerReport} in the top left corner of the screen: p50, p99
+ * and max in milliseconds for every histogram, and the counters. The text is only laid out again when
+ * the report moves to a new interval.
+ */
+public class ProfilerOverlay implements Disposable {
+
+    private static final float MARGIN = 8f;
+
+    private final ProfilerReport report;
+    private final SpriteBatch batch;
+    private final BitmapFont font;
+    private final GlyphLayout layout;
+    private final StringBuilder text;
+    private int shownInterval = -1;
+
+    public ProfilerOverlay(ProfilerReport report) {
+        this.report = report;
+        batch = new SpriteBatch();
+        // The font built into libGDX, so the overlay needs no assets of its own
+        font = new BitmapFont();
+        font.setColor(Color.YELLOW);
+        layout = new GlyphLayout();
+        text = new StringBuilder(512);
+
+        resize(Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+    }
+
+    public void resize(int width, int height) {
+        batch.getProjectionMatrix().setToOrtho2D(0, 0, width, height);
+    }
+
+    public void render() {
+        if (shownInterval != report.getIntervalNumber()) {
+            shownInterval = report.getIntervalNumber();
+            buildText();
+            layout.setText(font, text);
+        }
+
+        batch.begin();
+        font.draw(batch, layout, MARGIN, Gdx.graphics.getHeight() - MARGIN);
+        batch.end();
+    }
+
+    @Override
+    public void dispose() {
+        batch.dispose();
+        font.dispose();
+    }
+
+    private void buildText() {
+        text.setLength(0);
+        text.append("ms          p50     p99     max\n");
+
+        for (int i = 0; i < report.getHistogramCount(); i++) {
+            LatencyHistogram.Snapshot interval = report.getInterval(i);
+            if (interval.getCount() == 0) {
+                continue;
+            }
+
+            text.append(report.getHistogramName(i)).append(' ');
+            appendMillis(interval.getPercentileNanos(0.5));
+            appendMillis(interval.getPercentileNanos(0.99));
+            appendMillis(interval.getMaxNanos());
+            text.append(" x").append(interval.getCount()).append('\n');
+        }
+
+        for (int i = 0; i < report.getCounterCount(); i++) {
+            text.append(report.getCounterName(i)).append(' ').append(report.getIntervalCount(i)).append('\n');
+        }
+    }
+
+    // Two decimals without going through floats, which would allocate
+    private void appendMillis(long nanos) {
+        long hundredths = (nanos + 5000) / 10000;
+        text.append("  ").append(hundredths / 100).append('.');
+        long fraction = hundredths % 100;
+        if (fraction < 10) {
+            text.append('0');
+        }
+        text.append(fraction);
+    }
+}
@@ -0,0 +1,204 @@
+package com.packtpub.libgdx.bludbourne.profiling;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.packtpub.libgdx.bludbourne.logging.Log;
+
+import java.util.Locale;
+
+/**
+ * Collects the {@link Profiler} probes on the render thread. Every interval (a second by default) the
+ * probes are drained into the interval snapshots the overlay shows. The intervals also add up into a
+ * longer window that is written out as CSV and JSON, ten seconds by default:
+ * <ul>
+ * <li>profiling/metrics.csv gets one row per metric and window appended, for spreadsheets and diffs</li>
+ * <li>profiling/metrics.json is overwritten with the latest window, for tools</li>
+ * </ul>
+ */
+public class ProfilerReport {
+
+    private static final String TAG = ProfilerReport.class.getSimpleName();
+
+    public static final float DEFAULT_INTERVAL_SECONDS = 1f;
+    public static final float DEFAULT_DUMP_INTERVAL_SECONDS = 10f;
+    public static final String DEFAULT_DUMP_DIRECTORY = "profiling";
+
+    private static final String CSV_HEADER = "time_s,metric,count,mean_us,p50_us,p90_us,p99_us,max_us\n";
+
+    private final LatencyHistogram.Snapshot[] intervals;
+    private final LatencyHistogram.Snapshot[] windows;
+    private final long[] intervalCounts;
+    private final long[] windowCounts;
+
+    private float intervalSeconds;
+    private float dumpIntervalSeconds;
+    private float intervalTimer;
+    private float dumpTimer;
+    private float elapsedSeconds;
+    private int intervalNumber;
+
+    private FileHandle csvFile;
+    private FileHandle jsonFile;
+
+    public ProfilerReport() {
+        this(Gdx.files.local(DEFAULT_DUMP_DIRECTORY));
+    }
+
+    public ProfilerReport(FileHandle dumpDirectory) {
+        intervals = new LatencyHistogram.Snapshot[Profiler.HISTOGRAMS.length];
+        windows = new LatencyHistogram.Snapshot[Profiler.HISTOGRAMS.length];
+        for (int i = 0; i < intervals.length; i++) {
+            intervals[i] = new LatencyHistogram.Snapshot();
+            windows[i] = new LatencyHistogram.Snapshot();
+        }
+        intervalCounts = new long[Profiler.COUNTERS.length];
+        windowCounts = new long[Profiler.COUNTERS.length];
+
+        intervalSeconds = DEFAULT_INTERVAL_SECONDS;
+        dumpIntervalSeconds = DEFAULT_DUMP_INTERVAL_SECONDS;
+
+        if (!dumpDirectory.exists()) {
+            dumpDirectory.mkdirs();
+        }
+        csvFile = dumpDirectory.child("metrics.csv");
+        jsonFile = dumpDirectory.child("metrics.json");
+
+        // Whatever was recorded before the report existed belongs to no interval
+        for (int i = 0; i < intervals.length; i++) {
+            Profiler.HISTOGRAMS[i].drainTo(intervals[i]);
+            intervals[i].clear();
+        }
+        for (Counter counter : Profiler.COUNTERS) {
+            counter.drain();
+        }
+    }
+
+    // Call once per frame from the render thread
+    public void update(float delta) {
+        elapsedSeconds += delta;
+        intervalTimer += delta;
+        if (intervalTimer < intervalSeconds) {
+            return;
+        }
+        intervalTimer = 0f;
+
+        for (int i = 0; i < intervals.length; i++) {
+            intervals[i].clear();
+            Profiler.HISTOGRAMS[i].drainTo(intervals[i]);
+            windows[i].add(intervals[i]);
+        }
+        for (int i = 0; i < intervalCounts.length; i++) {
+            intervalCounts[i] = Profiler.COUNTERS[i].drain();
+            windowCounts[i] += intervalCounts[i];
+        }
+        intervalNumber++;
+
+        dumpTimer += intervalSeconds;
+        if (dumpTimer >= dumpIntervalSeconds) {
+            dump(dumpTimer);
+            dumpTimer = 0f;
+        }
+    }
+
+    public void setIntervalSeconds(float intervalSeconds) {
+        this.intervalSeconds = Math.max(0.1f, intervalSeconds);
+    }
+
+    public void setDumpIntervalSeconds(float dumpIntervalSeconds) {
+        this.dumpIntervalSeconds = Math.max(intervalSeconds, dumpIntervalSeconds);
+    }
+
+    // Changes every time the interval snapshots are refreshed
+    public int getIntervalNumber() {
+        return intervalNumber;
+    }
+
+    public int getHistogramCount() {
+        return intervals.length;
+    }
+
+    public String getHistogramName(int index) {
+        return Profiler.HISTOGRAMS[index].getName();
+    }
+
+    // Last complete interval of the histogram, do not keep it across update() calls
+    public LatencyHistogram.Snapshot getInterval(int index) {
+        return intervals[index];
+    }
+
+    public int getCounterCount() {
+        return intervalCounts.length;
+    }
+
+    public String getCounterName(int index) {
+        return Profiler.COUNTERS[index].getName();
+    }
+
+    public long getIntervalCount(int index) {
+        return intervalCounts[index];
+    }
+
+    public float getIntervalSeconds() {
+        return intervalSeconds;
+    }
+
+    private void dump(float windowSeconds) {
+        StringBuilder csv = new StringBuilder(1024);
+        if (!csvFile.exists()) {
+            csv.append(CSV_HEADER);
+        }
+
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\n  \"time_s\": ").append(format(elapsedSeconds))
+                .append(",\n  \"window_s\": ").append(format(windowSeconds))
+                .append(",\n  \"histograms\": {");
+
+        for (int i = 0; i < windows.length; i++) {
+            LatencyHistogram.Snapshot window = windows[i];
+            String name = Profiler.HISTOGRAMS[i].getName();
+            String mean = micros(window.getMeanNanos());
+            String p50 = micros(window.getPercentileNanos(0.5));
+            String p90 = micros(window.getPercentileNanos(0.9));
+            String p99 = micros(window.getPercentileNanos(0.99));
+            String max = micros(window.getMaxNanos());
+
+            csv.append(format(elapsedSeconds)).append(',').append(name).append(',').append(window.getCount())
+                    .append(',').append(mean).append(',').append(p50).append(',').append(p90)
+                    .append(',').append(p99).append(',').append(max).append('\n');
+
+            json.append(i == 0 ? "\n" : ",\n").append("    \"").append(name).append("\": {")
+                    .append("\"count\": ").append(window.getCount())
+                    .append(", \"mean_us\": ").append(mean)
+                    .append(", \"p50_us\": ").append(p50)
+                    .append(", \"p90_us\": ").append(p90)
+                    .append(", \"p99_us\": ").append(p99)
+                    .append(", \"max_us\": ").append(max).append('}');
+            window.clear();
+        }
+
+        json.append("\n  },\n  \"counters\": {");
+        for (int i = 0; i < windowCounts.length; i++) {
+            String name = Profiler.COUNTERS[i].getName();
+            csv.append(format(elapsedSeconds)).append(',').append(name).append(',').append(windowCounts[i]).append(",,,,,\n");
+            json.append(i == 0 ? "\n" : ",\n").append("    \"").append(name).append("\": ").append(windowCounts[i]);
+            windowCounts[i] = 0;
+        }
+        json.append("\n  }\n}\n");
+
+        try {
+            csvFile.writeString(csv.toString(), true);
+            jsonFile.writeString(json.toString(), false);
+        } catch (RuntimeException e) {
+            // Profiling must never take the game down
+            Log.error(TAG, "Could not write metrics to {}", csvFile.parent().path(), e);
+        }
+    }
+
+    private static String micros(long nanos) {
+        return format(nanos / 1000f);
+    }
+
+    private static String format(float value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+}
@@ -0,0 +1,36 @@
+package com.packtpub.libgdx.bludbourne.replay;
+
+/**
+ * Layout of the replay logs written by {@link ReplayRecorder} and played back by {@link ReplayPlayer}.
+ * All values are big endian, strings are a short byte length followed by UTF-8 bytes.
+ *
+ * <pre>
+ * header:
+ *   int     magic, short version, float simulation step
+ *   string  current map, float player x, player y, byte direction, byte state
+ *   short   map count, then per map: string name, float start x, start y
+ * records, each starting with a byte tag:
+ *   FRAME       float delta, every frame before anything else happens
+ *   MAP_ENTERED string map name, when a map transition finishes
+ *   STEP        byte pressed keys, byte pressed mouse buttons, before every simulation step
+ *   CHECKPOINT  float player x, player y, byte direction, byte state
+ *   END
+ * </pre>
+ */
+public final class ReplayFormat {
+
+    public static final int MAGIC = 0x4252504C; // "BRPL"
+    // Bumped whenever the simulation moves entities differently, old logs would no longer match
+    public static final short VERSION = 2;
+
+    public static final String EXTENSION = ".brpl";
+
+    public static final byte END = 0;
+    public static final byte FRAME = 1;
+    public static final byte MAP_ENTERED = 2;
+    public static final byte STEP = 3;
+    public static final byte CHECKPOINT = 4;
+
+    private ReplayFormat() {
+    }
+}
@@ -0,0 +1,261 @@
+package com.packtpub.libgdx.bludbourne.replay;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.packtpub.libgdx.bludbourne.Entity;
+import com.packtpub.libgdx.bludbourne.EntityWorld;
+import com.packtpub.libgdx.bludbourne.MapManager;
+import com.packtpub.libgdx.bludbourne.PlayerController;
+import com.packtpub.libgdx.bludbourne.SimulationScheduler;
+import com.packtpub.libgdx.bludbourne.Utility;
+import com.packtpub.libgdx.bludbourne.logging.Log;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Plays a {@link ReplayFormat} log back headlessly, as fast as it goes. Every recorded frame runs the
+ * same simulation and map transitions as MainGameScreen with the recorded delta and input, and every
+ * checkpoint is compared bit for bit with where the player ended up. The fixed step simulation does not
+ * depend on the thread count, so a faithful replay matches exactly.
+ */
+public class ReplayPlayer {
+
+    private static final String TAG = ReplayPlayer.class.getSimpleName();
+
+    private final FileHandle file;
+    private int parallelism;
+
+    private ByteBuffer buffer;
+    private MapManager mapManager;
+    private Entity player;
+    private PlayerController controller;
+    private boolean loadingMap;
+    private String expectedMapName;
+
+    private long frames;
+    private long steps;
+    private long checkpoints;
+    private long mismatches;
+    private long firstMismatchFrame = -1;
+    private double simulatedSeconds;
+    private long elapsedNanos;
+
+    public ReplayPlayer(FileHandle file) {
+        this.file = file;
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    // Plays the whole log, returns true if every checkpoint matched
+    public boolean play() {
+        if (!Utility.isHeadless()) {
+            throw new GdxRuntimeException("Replays run headless, call Utility.setHeadless(true) first");
+        }
+
+        buffer = read(file);
+        if (buffer.getInt() != ReplayFormat.MAGIC || buffer.getShort() != ReplayFormat.VERSION) {
+            throw new GdxRuntimeException(file.path() + " is not a replay this version can play");
+        }
+        float step = buffer.getFloat();
+
+        EntityWorld world = new EntityWorld();
+        mapManager = new MapManager();
+        player = new Entity(world);
+        controller = new PlayerController(player);
+        readStart();
+
+        SimulationScheduler simulation = new SimulationScheduler(step, parallelism);
+        simulation.addStepListener(new SimulationScheduler.StepListener() {
+            @Override
+            public void onStep(float step) {
+                applyStep(step);
+            }
+        });
+
+        long start = System.nanoTime();
+        try {
+            byte tag = buffer.get();
+            while (tag != ReplayFormat.END) {
+                if (tag != ReplayFormat.FRAME) {
+                    throw new GdxRuntimeException("Expected a frame at " + (buffer.position() - 1) + ", got " + tag);
+                }
+                float delta = buffer.getFloat();
+                frames++;
+
+                if (buffer.get(buffer.position()) == ReplayFormat.MAP_ENTERED) {
+                    buffer.get();
+                    enterMap(readString());
+                }
+
+                if (!loadingMap) {
+                    simulation.update(delta, world, mapManager.getCollisionGrid());
+                    simulatedSeconds += delta;
+                    player.updateBoundingBox();
+                    updatePortal();
+                }
+
+                tag = skipUnusedSteps();
+                if (tag == ReplayFormat.CHECKPOINT) {
+                    verifyCheckpoint();
+                    tag = buffer.get();
+                }
+            }
+        } finally {
+            elapsedNanos = System.nanoTime() - start;
+            simulation.dispose();
+            player.dispose();
+        }
+
+        return mismatches == 0;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    public long getCheckpoints() {
+        return checkpoints;
+    }
+
+    public long getMismatches() {
+        return mismatches;
+    }
+
+    // -1 if every checkpoint matched
+    public long getFirstMismatchFrame() {
+        return firstMismatchFrame;
+    }
+
+    public double getSimulatedSeconds() {
+        return simulatedSeconds;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    private void readStart() {
+        String mapName = readString();
+        float x = buffer.getFloat();
+        float y = buffer.getFloat();
+        int direction = buffer.get();
+        int state = buffer.get();
+
+        int mapCount = buffer.getShort();
+        for (int i = 0; i < mapCount; i++) {
+            String name = readString();
+            mapManager.setPlayerStartLocation(name, buffer.getFloat(), buffer.getFloat());
+        }
+
+        mapManager.loadMap(mapName);
+        player.init(x, y);
+        player.setCurrentPosition(x, y);
+        player.setDirection(Entity.Direction.values()[direction]);
+        player.setState(Entity.State.values()[state]);
+    }
+
+    // Called by the simulation before every step, the recording has one STEP record per step
+    private void applyStep(float step) {
+        byte tag = buffer.get();
+        if (tag != ReplayFormat.STEP) {
+            // The replay runs more steps than were recorded, the frame deltas did not add up the same way
+            buffer.position(buffer.position() - 1);
+            countMismatch("extra simulation step");
+            return;
+        }
+
+        controller.setInputState(buffer.get() & 0xFF, buffer.get() & 0xFF);
+        controller.onStep(step);
+        steps++;
+    }
+
+    // Steps the recording has left over for this frame mean the replay ran fewer, returns the next tag
+    private byte skipUnusedSteps() {
+        byte tag = buffer.get();
+        while (tag == ReplayFormat.STEP) {
+            buffer.get();
+            buffer.get();
+            countMismatch("missing simulation step");
+            tag = buffer.get();
+        }
+        return tag;
+    }
+
+    // The same as MainGameScreen.updatePortalLayerActivation(), with the map loaded when the recording says
+    private void updatePortal() {
+        String mapName = mapManager.getPortalTarget(player.getBoundingBox());
+        if (isNull(mapName)) {
+            return;
+        }
+
+        mapManager.setClosestStartPositionFromScaledUnits(player.getCurrentPlayerPosition());
+        expectedMapName = mapName;
+        loadingMap = true;
+    }
+
+    // The same as MainGameScreen.finishMapTransition()
+    private void enterMap(String mapName) {
+        if (!mapName.equals(expectedMapName)) {
+            countMismatch("entered " + mapName + " instead of " + expectedMapName);
+        }
+
+        mapManager.loadMap(mapName);
+        player.init(mapManager.getPlayerStartUnitScaled().x, mapManager.getPlayerStartUnitScaled().y);
+        player.setCurrentPosition(mapManager.getPlayerStartUnitScaled().x, mapManager.getPlayerStartUnitScaled().y);
+        expectedMapName = null;
+        loadingMap = false;
+    }
+
+    private void verifyCheckpoint() {
+        float x = buffer.getFloat();
+        float y = buffer.getFloat();
+        int direction = buffer.get();
+        int state = buffer.get();
+        checkpoints++;
+
+        float actualX = player.getCurrentPlayerPosition().x;
+        float actualY = player.getCurrentPlayerPosition().y;
+        if (Float.floatToIntBits(x) != Float.floatToIntBits(actualX)
+                || Float.floatToIntBits(y) != Float.floatToIntBits(actualY)
+                || direction != player.getCurrentDirection().ordinal()
+                || state != player.getState().ordinal()) {
+            countMismatch("recorded (" + x + "," + y + ") but replayed (" + actualX + "," + actualY + ")");
+        }
+    }
+
+    private void countMismatch(String reason) {
+        Log.info(TAG, "Frame {}: {}", frames, reason);
+        if (firstMismatchFrame < 0) {
+            firstMismatchFrame = frames;
+        }
+        mismatches++;
+    }
+
+    private String readString() {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer read(FileHandle file) {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file.file(), "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Could not read " + file.path(), e);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.packtpub.libgdx.bludbourne.replay;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.packtpub.libgdx.bludbourne.Entity;
+import com.packtpub.libgdx.bludbourne.MapManager;
+import com.packtpub.libgdx.bludbourne.PlayerController;
+import com.packtpub.libgdx.bludbourne.SimulationScheduler;
+import com.packtpub.libgdx.bludbourne.logging.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Records a play session into a {@link ReplayFormat} log: the delta of every frame, the input the
+ * {@link PlayerController} applied at every simulation step, finished map transitions and a checkpoint
+ * of the player every few frames for {@link ReplayPlayer} to verify against.
+ *
+ * Register it as a step listener after the controller. Records go to a buffer that is written out when
+ * it fills up, so a frame costs a few bytes of copying. Disabled by default, see {@link #setEnabled(boolean)}.
+ */
+public class ReplayRecorder implements SimulationScheduler.StepListener, Disposable {
+
+    private static final String TAG = ReplayRecorder.class.getSimpleName();
+
+    public static final String DEFAULT_PATH = "replays/last" + ReplayFormat.EXTENSION;
+    public static final int DEFAULT_CHECKPOINT_INTERVAL_FRAMES = 30;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static boolean enabled = false;
+
+    private final PlayerController controller;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final int checkpointIntervalFrames;
+    private long frame;
+
+    public static void setEnabled(boolean enabled) {
+        ReplayRecorder.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public ReplayRecorder(FileHandle fileHandle, PlayerController controller) {
+        this.controller = controller;
+        checkpointIntervalFrames = DEFAULT_CHECKPOINT_INTERVAL_FRAMES;
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        File file = fileHandle.file();
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!isNull(parent) && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new GdxRuntimeException("Could not create " + parent.getPath());
+        }
+        try {
+            channel = new FileOutputStream(file, false).getChannel();
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Could not open " + file.getPath(), e);
+        }
+
+        Log.info(TAG, "Recording to {}", file.getPath());
+    }
+
+    // Writes the state the replay starts from, call once the map and the player are set up
+    public void begin(MapManager mapManager, Entity player, float step) {
+        buffer.putInt(ReplayFormat.MAGIC);
+        buffer.putShort(ReplayFormat.VERSION);
+        buffer.putFloat(step);
+
+        Vector2 position = player.getCurrentPlayerPosition();
+        putString(mapManager.getCurrentMapName());
+        buffer.putFloat(position.x);
+        buffer.putFloat(position.y);
+        buffer.put((byte) player.getCurrentDirection().ordinal());
+        buffer.put((byte) player.getState().ordinal());
+
+        String[] mapNames = mapManager.getMapNames();
+        buffer.putShort((short) mapNames.length);
+        for (String mapName : mapNames) {
+            Vector2 start = mapManager.getPlayerStartLocation(mapName);
+            putString(mapName);
+            buffer.putFloat(start.x);
+            buffer.putFloat(start.y);
+        }
+    }
+
+    // Call at the start of every frame, before the simulation runs
+    public void frame(float delta) {
+        ensureRemaining(5);
+        buffer.put(ReplayFormat.FRAME);
+        buffer.putFloat(delta);
+        frame++;
+    }
+
+    public void mapEntered(String mapName) {
+        ensureRemaining(3 + mapName.length() * 3);
+        buffer.put(ReplayFormat.MAP_ENTERED);
+        putString(mapName);
+    }
+
+    @Override
+    public void onStep(float step) {
+        ensureRemaining(3);
+        buffer.put(ReplayFormat.STEP);
+        buffer.put((byte) controller.getKeyState());
+        buffer.put((byte) controller.getMouseState());
+    }
+
+    // Call at the end of every frame, writes a checkpoint every few frames
+    public void endFrame(Entity player) {
+        if (frame % checkpointIntervalFrames == 0) {
+            checkpoint(player);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        ensureRemaining(1);
+        buffer.put(ReplayFormat.END);
+        flush();
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            Log.error(TAG, "Could not close the replay", e);
+        }
+    }
+
+    private void checkpoint(Entity player) {
+        ensureRemaining(11);
+        Vector2 position = player.getCurrentPlayerPosition();
+        buffer.put(ReplayFormat.CHECKPOINT);
+        buffer.putFloat(position.x);
+        buffer.putFloat(position.y);
+        buffer.put((byte) player.getCurrentDirection().ordinal());
+        buffer.put((byte) player.getState().ordinal());
+    }
+
+    private void putString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private void ensureRemaining(int bytes) {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Could not write the replay", e);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,423 @@
+package com.packtpub.libgdx.bludbourne.save;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.packtpub.libgdx.bludbourne.EntityWorld;
+import com.packtpub.libgdx.bludbourne.MapManager;
+import com.packtpub.libgdx.bludbourne.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Binary snapshot of the map start positions, the current map and every slot of an {@link EntityWorld}.
+ * All values are big endian.
+ *
+ * <pre>
+ * header, at most HEADER_SIZE bytes:
+ *   int     magic, short version, short record size
+ *   int     slot count, int player slot
+ *   string  current map, short map count, then per map: string name, float start x, start y
+ *           (strings are short byte length + UTF-8 bytes)
+ * records, slot i at HEADER_SIZE + i * RECORD_SIZE:
+ *   byte    alive, byte direction, byte state, byte unused
+ *   float   x, y, frame time
+ * </pre>
+ *
+ * Every record has a fixed place in the file, so an autosave only rewrites the header and the slots
+ * the world marked dirty. The frame just copies those into a staging buffer, the writes happen on a
+ * background thread.
+ */
+public class SaveGame implements Disposable {
+
+    private static final String TAG = SaveGame.class.getSimpleName();
+
+    public static final int MAGIC = 0x42534156; // "BSAV"
+    public static final short VERSION = 1;
+
+    public static final int HEADER_SIZE = 4096;
+    public static final int RECORD_SIZE = 16;
+
+    private final File file;
+    private final ExecutorService writer;
+    private final Runnable writeTask;
+    private Future<?> pendingWrite;
+
+    // Staging area, owned by the writer while a write is pending
+    private final ByteBuffer header;
+    private ByteBuffer records;
+    private int[] runSlots = new int[16];
+    private int[] runLengths = new int[16];
+    private int runCount;
+    private long truncateTo;
+
+    private FileChannel channel;
+    private volatile boolean writeFailed;
+    // False until the file holds every slot, the next save then writes them all
+    private boolean fileComplete;
+    // The world the file holds; saving another one, e.g. after a map change, writes it whole
+    private EntityWorld lastWorld;
+
+    private String[] mapNames;
+    private final Map<String, byte[]> encodedNames = new HashMap<>();
+
+    public SaveGame(FileHandle fileHandle) {
+        file = fileHandle.file();
+        header = ByteBuffer.allocateDirect(HEADER_SIZE);
+        records = ByteBuffer.allocateDirect(RECORD_SIZE * 64);
+
+        writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "SaveGame writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        writeTask = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    write();
+                } catch (IOException e) {
+                    writeFailed = true;
+                    Log.error(TAG, "Could not write {}", file.getPath(), e);
+                }
+            }
+        };
+    }
+
+    public boolean exists() {
+        return file.isFile();
+    }
+
+    public boolean isWriting() {
+        return !isNull(pendingWrite) && !pendingWrite.isDone();
+    }
+
+    // Writes every slot and waits for it, e.g. when the game is paused or closed
+    public void save(MapManager mapManager, EntityWorld world, int playerSlot) {
+        awaitWrite();
+        capture(mapManager, world, playerSlot, true);
+        pendingWrite = writer.submit(writeTask);
+        awaitWrite();
+    }
+
+    // Hands the dirty slots to the background writer; false if the previous write is still running
+    public boolean autosave(MapManager mapManager, EntityWorld world, int playerSlot) {
+        if (isWriting()) {
+            return false;
+        }
+
+        capture(mapManager, world, playerSlot, !fileComplete || writeFailed || world != lastWorld);
+        pendingWrite = writer.submit(writeTask);
+        return true;
+    }
+
+    // Name of the map the game was saved on, null if there is no saved game or it is empty
+    public String readCurrentMapName() {
+        ByteBuffer buffer = readHeader();
+        if (isNull(buffer)) {
+            return null;
+        }
+
+        // Slot count and player slot
+        buffer.position(buffer.position() + 8);
+        String currentMapName = readString(buffer);
+        return currentMapName.isEmpty() ? null : currentMapName;
+    }
+
+    // Restores the map start positions, the current map and the world; the record saved for the player
+    // ends up in playerSlot. Maps are loaded through MapManager as usual, only state is read from the file.
+    // When the world belongs to a map, load the saved one first, see readCurrentMapName().
+    public boolean load(MapManager mapManager, EntityWorld world, int playerSlot) {
+        ByteBuffer buffer = readHeader();
+        if (isNull(buffer)) {
+            return false;
+        }
+
+        int savedCount = buffer.getInt();
+        int savedPlayerSlot = buffer.getInt();
+        if (buffer.capacity() < HEADER_SIZE + (long) savedCount * RECORD_SIZE || savedPlayerSlot >= savedCount) {
+            Log.debug(TAG, "{} is truncated", file.getPath());
+            return false;
+        }
+
+        String currentMapName = readString(buffer);
+        int mapCount = buffer.getShort();
+        for (int i = 0; i < mapCount; i++) {
+            String mapName = readString(buffer);
+            mapManager.setPlayerStartLocation(mapName, buffer.getFloat(), buffer.getFloat());
+        }
+
+        int count = Math.max(savedCount, playerSlot + 1);
+        boolean[] alive = new boolean[count];
+        float[] x = new float[count];
+        float[] y = new float[count];
+        int[] direction = new int[count];
+        int[] state = new int[count];
+        float[] frameTime = new float[count];
+
+        buffer.position(HEADER_SIZE);
+        for (int i = 0; i < savedCount; i++) {
+            alive[i] = buffer.get() != 0;
+            direction[i] = buffer.get();
+            state[i] = buffer.get();
+            buffer.get();
+            x[i] = buffer.getFloat();
+            y[i] = buffer.getFloat();
+            frameTime[i] = buffer.getFloat();
+        }
+
+        if (savedPlayerSlot >= 0 && savedPlayerSlot != playerSlot) {
+            swap(alive, savedPlayerSlot, playerSlot);
+            swap(x, savedPlayerSlot, playerSlot);
+            swap(y, savedPlayerSlot, playerSlot);
+            swap(direction, savedPlayerSlot, playerSlot);
+            swap(state, savedPlayerSlot, playerSlot);
+            swap(frameTime, savedPlayerSlot, playerSlot);
+        }
+
+        if (!currentMapName.isEmpty() && !currentMapName.equals(mapManager.getCurrentMapName())) {
+            mapManager.loadMap(currentMapName);
+        }
+        world.restore(count, alive, x, y, direction, state, frameTime);
+
+        // The file still has the player where it was saved
+        fileComplete = count == savedCount && savedPlayerSlot == playerSlot;
+        lastWorld = world;
+        if (savedPlayerSlot >= 0 && savedPlayerSlot != playerSlot) {
+            world.markDirty(savedPlayerSlot);
+            world.markDirty(playerSlot);
+        }
+
+        Log.debug(TAG, "Loaded {} slots on {}", savedCount, currentMapName);
+        return true;
+    }
+
+    @Override
+    public void dispose() {
+        awaitWrite();
+        writer.shutdown();
+
+        if (!isNull(channel)) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Log.error(TAG, "Could not close {}", file.getPath(), e);
+            }
+            channel = null;
+        }
+    }
+
+    // The whole file, positioned after the version check; null if it is not a saved game we can read
+    private ByteBuffer readHeader() {
+        awaitWrite();
+        if (!exists()) {
+            return null;
+        }
+
+        ByteBuffer buffer;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel readChannel = randomAccessFile.getChannel()) {
+            buffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+        } catch (IOException e) {
+            Log.error(TAG, "Could not read {}", file.getPath(), e);
+            return null;
+        }
+
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            Log.debug(TAG, "{} is not a saved game", file.getPath());
+            return null;
+        }
+
+        short version = buffer.getShort();
+        short recordSize = buffer.getShort();
+        if (version != VERSION || recordSize != RECORD_SIZE) {
+            Log.debug(TAG, "Unsupported save version {}", version);
+            return null;
+        }
+
+        return buffer;
+    }
+
+    private void awaitWrite() {
+        if (isNull(pendingWrite)) {
+            return;
+        }
+
+        try {
+            pendingWrite.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new GdxRuntimeException("Saving failed", e.getCause());
+        }
+        pendingWrite = null;
+    }
+
+    // Runs on the frame's thread, copies what the writer needs so the world can keep changing
+    private void capture(MapManager mapManager, EntityWorld world, int playerSlot, boolean full) {
+        writeFailed = false;
+        int size = world.size();
+
+        header.clear();
+        try {
+            header.putInt(MAGIC);
+            header.putShort(VERSION);
+            header.putShort((short) RECORD_SIZE);
+            header.putInt(size);
+            header.putInt(playerSlot);
+            String currentMapName = mapManager.getCurrentMapName();
+            putString(header, isNull(currentMapName) ? "" : currentMapName);
+
+            if (isNull(mapNames)) {
+                mapNames = mapManager.getMapNames();
+            }
+            header.putShort((short) mapNames.length);
+            for (String mapName : mapNames) {
+                Vector2 start = mapManager.getPlayerStartLocation(mapName);
+                putString(header, mapName);
+                header.putFloat(start.x);
+                header.putFloat(start.y);
+            }
+        } catch (BufferOverflowException e) {
+            throw new GdxRuntimeException("Save header is larger than " + HEADER_SIZE + " bytes", e);
+        }
+        header.flip();
+
+        records.clear();
+        runCount = 0;
+        int slot = full ? (size > 0 ? 0 : -1) : world.nextDirty(0);
+        while (slot >= 0) {
+            putRecord(world, slot);
+            world.clearDirty(slot);
+
+            if (runCount > 0 && runSlots[runCount - 1] + runLengths[runCount - 1] == slot) {
+                runLengths[runCount - 1]++;
+            } else {
+                if (runCount == runSlots.length) {
+                    runSlots = Arrays.copyOf(runSlots, runCount * 2);
+                    runLengths = Arrays.copyOf(runLengths, runCount * 2);
+                }
+                runSlots[runCount] = slot;
+                runLengths[runCount++] = 1;
+            }
+
+            slot = full ? (slot + 1 < size ? slot + 1 : -1) : world.nextDirty(slot + 1);
+        }
+        records.flip();
+
+        truncateTo = full ? HEADER_SIZE + (long) size * RECORD_SIZE : -1;
+        if (full) {
+            fileComplete = true;
+            lastWorld = world;
+        }
+    }
+
+    private void putRecord(EntityWorld world, int slot) {
+        if (records.remaining() < RECORD_SIZE) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(records.capacity() * 2);
+            records.flip();
+            larger.put(records);
+            records = larger;
+        }
+
+        records.put((byte) (world.isAlive(slot) ? 1 : 0));
+        records.put((byte) world.getDirection(slot));
+        records.put((byte) world.getState(slot));
+        records.put((byte) 0);
+        records.putFloat(world.getX(slot));
+        records.putFloat(world.getY(slot));
+        records.putFloat(world.getFrameTime(slot));
+    }
+
+    // Runs on the writer thread. Records go first so a crash mid-write never leaves a header
+    // pointing past the end of the file.
+    private void write() throws IOException {
+        if (isNull(channel)) {
+            File parent = file.getParentFile();
+            if (!isNull(parent) && !parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Could not create " + parent.getPath());
+            }
+            channel = new RandomAccessFile(file, "rw").getChannel();
+        }
+
+        int offset = 0;
+        for (int i = 0; i < runCount; i++) {
+            int length = runLengths[i] * RECORD_SIZE;
+            records.limit(offset + length);
+            records.position(offset);
+            writeFully(records, HEADER_SIZE + (long) runSlots[i] * RECORD_SIZE);
+            offset += length;
+        }
+
+        writeFully(header, 0);
+
+        if (truncateTo >= 0) {
+            if (channel.size() > truncateTo) {
+                channel.truncate(truncateTo);
+            }
+            channel.force(false);
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = encodedNames.get(value);
+        if (isNull(bytes)) {
+            bytes = value.getBytes(StandardCharsets.UTF_8);
+            encodedNames.put(value, bytes);
+        }
+
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void swap(boolean[] values, int a, int b) {
+        boolean value = values[a];
+        values[a] = values[b];
+        values[b] = value;
+    }
+
+    private static void swap(float[] values, int a, int b) {
+        float value = values[a];
+        values[a] = values[b];
+        values[b] = value;
+    }
+
+    private static void swap(int[] values, int a, int b) {
+        int value = values[a];
+        values[a] = values[b];
+        values[b] = value;
+    }
+}
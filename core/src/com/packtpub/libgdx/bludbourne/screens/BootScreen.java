@@ -0,0 +1,70 @@
+package com.packtpub.libgdx.bludbourne.screens;
+
+import com.badlogic.gdx.Game;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.graphics.GL20;
+import com.packtpub.libgdx.bludbourne.MapManager;
+import com.packtpub.libgdx.bludbourne.boot.BootLoader;
+import com.packtpub.libgdx.bludbourne.save.SaveGame;
+
+/**
+ * First screen of the game, keeps the window responsive while the {@link BootLoader} loads the start map
+ * and the sprite atlas, then hands over to a {@link MainGameScreen} that finds them resident. The loader
+ * belongs to the game, it keeps warming the other maps up after this screen is gone.
+ */
+public class BootScreen implements Screen {
+
+    // Time per frame for texture uploads, the same slice MainGameScreen gives map loading
+    private static final int UPLOAD_BUDGET_MILLIS = 8;
+
+    private final Game game;
+    private final BootLoader bootLoader;
+
+    public BootScreen(Game game, BootLoader bootLoader) {
+        this.game = game;
+        this.bootLoader = bootLoader;
+    }
+
+    @Override
+    public void show() {
+        // The map the game continues on, the one MainGameScreen loads first
+        SaveGame saveGame = new SaveGame(Gdx.files.local(MainGameScreen.SAVE_FILE_PATH));
+        String startMapName = saveGame.readCurrentMapName();
+        saveGame.dispose();
+
+        bootLoader.start(new MapManager(), startMapName);
+    }
+
+    @Override
+    public void render(float delta) {
+        // Fades up from black as the assets come in
+        float progress = bootLoader.getProgress() * 0.25f;
+        Gdx.gl.glClearColor(progress, progress, progress, 1);
+        Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+
+        if (bootLoader.update(UPLOAD_BUDGET_MILLIS)) {
+            game.setScreen(new MainGameScreen());
+        }
+    }
+
+    @Override
+    public void resize(int width, int height) {
+    }
+
+    @Override
+    public void pause() {
+    }
+
+    @Override
+    public void resume() {
+    }
+
+    @Override
+    public void hide() {
+    }
+
+    @Override
+    public void dispose() {
+    }
+}
@@ -1,9 +1,51 @@
 package com.packtpub.libgdx.bludbourne.screens;
 
-public class MainGameScreen {
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.g2d.Sprite;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.packtpub.libgdx.bludbourne.AnimationCache;
+import com.packtpub.libgdx.bludbourne.AreaOfInterest;
+import com.packtpub.libgdx.bludbourne.AssetReloader;
+import com.packtpub.libgdx.bludbourne.Entity;
+import com.packtpub.libgdx.bludbourne.EntityWorld;
+import com.packtpub.libgdx.bludbourne.MapManager;
+import com.packtpub.libgdx.bludbourne.PlayerController;
+import com.packtpub.libgdx.bludbourne.SimulationScheduler;
+import com.packtpub.libgdx.bludbourne.Utility;
+import com.packtpub.libgdx.bludbourne.logging.Log;
+import com.packtpub.libgdx.bludbourne.maps.ChunkedMapRenderer;
+import com.packtpub.libgdx.bludbourne.profiling.FrameAllocationTracker;
+import com.packtpub.libgdx.bludbourne.profiling.Profiler;
+import com.packtpub.libgdx.bludbourne.profiling.ProfilerOverlay;
+import com.packtpub.libgdx.bludbourne.profiling.ProfilerReport;
+import com.packtpub.libgdx.bludbourne.replay.ReplayRecorder;
+import com.packtpub.libgdx.bludbourne.save.SaveGame;
+import com.packtpub.libgdx.bludbourne.world.WorldSimulation;
+
+import static java.util.Objects.isNull;
+
+public class MainGameScreen implements Screen {
 
     private static final String TAG = MainGameScreen.class.getSimpleName();
 
+    // Time per frame the asset manager may spend on queued loads, about half a 60Hz frame
+    private static final int LOADING_BUDGET_MILLIS = 8;
+    // Background prefetching of neighbouring maps gets a smaller slice while playing
+    private static final int PREFETCH_BUDGET_MILLIS = 2;
+
+    static final String SAVE_FILE_PATH = "saves/bludbourne.sav";
+    // Only the slots that changed since the last autosave are written, in the background
+    private static final float AUTOSAVE_INTERVAL_SECONDS = 5f;
+
+    // Every entity of a map but the player shares this sheet
+    private static final String WANDERER_SPRITE_PATH = "sprites/characters/Engineer.png";
+    private static final Entity.Direction[] DIRECTIONS = Entity.Direction.values();
+
     public static class VIEWPORT {
         public static float viewportWidth;
         public static float viewportHeight;
@@ -23,4 +65,326 @@ public class MainGameScreen {
     }
 
     private static GameState gameState;
+
+    private PlayerController controller;
+    private TextureRegion currentPlayerFrame;
+    private Sprite currentPlayerSprite;
+
+    private ChunkedMapRenderer mapRenderer;
+    private OrthographicCamera camera;
+    private SimulationScheduler simulation;
+    private AreaOfInterest areaOfInterest;
+    private FrameAllocationTracker allocationTracker;
+    private ProfilerReport profilerReport;
+    private ProfilerOverlay profilerOverlay;
+    private SaveGame saveGame;
+    private float autosaveTimer;
+    private ReplayRecorder replayRecorder;
+    private AssetReloader assetReloader;
+    private WorldSimulation worldSimulation;
+    private AnimationCache.SpriteSheet wandererSheet;
+
+    private static MapManager mapManager;
+    private static Entity player;
+
+    public MainGameScreen() {
+        mapManager = new MapManager();
+    }
+
+    @Override
+    public void show() {
+        gameState = GameState.LOADING;
+
+        setupViewport(10, 10);
+
+        camera = new OrthographicCamera();
+        camera.setToOrtho(false, VIEWPORT.viewportWidth, VIEWPORT.viewportHeight);
+
+        simulation = new SimulationScheduler();
+        areaOfInterest = new AreaOfInterest();
+        simulation.setAreaOfInterest(areaOfInterest);
+
+        if (FrameAllocationTracker.isEnabled()) {
+            allocationTracker = new FrameAllocationTracker();
+        }
+        if (Profiler.isEnabled()) {
+            profilerReport = new ProfilerReport();
+            if (!Utility.isHeadless()) {
+                profilerOverlay = new ProfilerOverlay(profilerReport);
+            }
+        }
+
+        // Every map keeps ticking, the ones the player is not on at a low rate
+        worldSimulation = new WorldSimulation(simulation);
+        mapManager.setWorldSimulation(worldSimulation);
+
+        // The player joins the world of the map it was saved on
+        saveGame = new SaveGame(Gdx.files.local(SAVE_FILE_PATH));
+        String savedMapName = saveGame.readCurrentMapName();
+        if (!isNull(savedMapName)) {
+            mapManager.loadMap(savedMapName);
+        }
+        mapManager.getCurrentMap();
+
+        player = new Entity(mapManager.getWorld());
+        if (saveGame.load(mapManager, player.getWorld(), player.getSlot())) {
+            player.setNextPositionToCurrent();
+            player.setDirection(player.getCurrentDirection());
+        } else {
+            // The start position is only known once the map is loaded
+            Vector2 start = mapManager.getPlayerStartUnitScaled();
+            player.init(start.x, start.y);
+            player.setCurrentPosition(start.x, start.y);
+        }
+        worldSimulation.setForeground(mapManager.getCurrentMapName());
+
+        mapRenderer = new ChunkedMapRenderer(mapManager.getCurrentMap(), MapManager.UNIT_SCALE);
+        mapRenderer.setView(camera);
+        if (!Utility.isHeadless()) {
+            wandererSheet = AnimationCache.acquire(WANDERER_SPRITE_PATH, player.FRAME_WIDTH, player.FRAME_HEIGHT);
+        }
+
+        gameState = GameState.RUNNING;
+        currentPlayerSprite = player.getFrameSprite();
+        currentPlayerFrame = player.getCurrentFrame();
+
+        controller = new PlayerController(player);
+        simulation.addStepListener(controller);
+        Gdx.input.setInputProcessor(controller);
+
+        if (AssetReloader.isEnabled()) {
+            assetReloader = new AssetReloader(mapManager);
+        }
+
+        if (ReplayRecorder.isEnabled()) {
+            // After the controller, so every step records the input it was simulated with
+            replayRecorder = new ReplayRecorder(Gdx.files.local(ReplayRecorder.DEFAULT_PATH), controller);
+            replayRecorder.begin(mapManager, player, simulation.getStep());
+            simulation.addStepListener(replayRecorder);
+        }
+    }
+
+    @Override
+    public void render(float delta) {
+        if (!isNull(allocationTracker)) {
+            allocationTracker.beginFrame();
+        }
+        if (Profiler.isEnabled()) {
+            // Time between frames, what the player sees
+            Profiler.FRAME.record((long) (delta * 1000000000L));
+        }
+        if (!isNull(replayRecorder)) {
+            replayRecorder.frame(delta);
+        }
+        // Edited assets are swapped in here, between frames
+        if (!isNull(assetReloader) && assetReloader.update(delta)) {
+            mapRenderer.setMap(mapManager.getCurrentMap());
+        }
+
+        Gdx.gl.glClearColor(0, 0, 0, 1);
+        Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+
+        if (gameState == GameState.LOADING) {
+            // Keep drawing the old map while the new one streams in
+            Utility.updateAssetLoading(LOADING_BUDGET_MILLIS);
+            if (!mapManager.isLoadingMap()) {
+                finishMapTransition();
+            }
+        }
+
+        if (gameState == GameState.RUNNING) {
+            mapManager.updatePortalPrefetch(player.getCurrentPlayerPosition());
+            Utility.updateAssetLoading(PREFETCH_BUDGET_MILLIS);
+
+            // Moves the entities of the map around the view, the player included, and commits the ones that did not collide
+            Vector2 position = player.getCurrentPlayerPosition();
+            areaOfInterest.setView(position.x, position.y, VIEWPORT.viewportWidth, VIEWPORT.viewportHeight);
+            worldSimulation.update(delta, player.getSlot());
+            player.updateBoundingBox();
+            currentPlayerFrame = player.getCurrentFrame();
+
+            updatePortalLayerActivation(player.getBoundingBox());
+
+            autosaveTimer += delta;
+            if (autosaveTimer >= AUTOSAVE_INTERVAL_SECONDS && saveGame.autosave(mapManager, player.getWorld(), player.getSlot())) {
+                autosaveTimer = 0f;
+            }
+        }
+
+        currentPlayerSprite = player.getFrameSprite();
+        camera.position.set(currentPlayerSprite.getX(), currentPlayerSprite.getY(), 0f);
+        camera.update();
+
+        long renderStart = Profiler.start();
+        mapRenderer.setView(camera);
+        mapRenderer.render();
+
+        mapRenderer.getBatch().begin();
+        renderWanderers(player.getWorld());
+        mapRenderer.getBatch().draw(currentPlayerFrame, currentPlayerSprite.getX(), currentPlayerSprite.getY(), 1, 1);
+        mapRenderer.getBatch().end();
+        Profiler.stop(Profiler.RENDER, renderStart);
+
+        if (!isNull(profilerReport)) {
+            profilerReport.update(delta);
+        }
+        if (!isNull(profilerOverlay)) {
+            profilerOverlay.render();
+        }
+
+        if (!isNull(replayRecorder)) {
+            replayRecorder.endFrame(player);
+        }
+
+        if (!isNull(allocationTracker)) {
+            allocationTracker.endFrame();
+        }
+    }
+
+    @Override
+    public void resize(int width, int height) {
+        if (!isNull(profilerOverlay)) {
+            profilerOverlay.resize(width, height);
+        }
+    }
+
+    @Override
+    public void pause() {
+        // The window may never come back, keep everything
+        if (gameState == GameState.RUNNING) {
+            gameState = GameState.SAVING;
+            saveGame.save(mapManager, player.getWorld(), player.getSlot());
+            gameState = GameState.RUNNING;
+        }
+    }
+
+    @Override
+    public void resume() {
+    }
+
+    @Override
+    public void hide() {
+    }
+
+    @Override
+    public void dispose() {
+        if (!isNull(saveGame)) {
+            if (gameState == GameState.RUNNING) {
+                saveGame.save(mapManager, player.getWorld(), player.getSlot());
+            }
+            saveGame.dispose();
+        }
+        if (!isNull(player)) {
+            player.dispose();
+        }
+        AnimationCache.release(wandererSheet);
+        wandererSheet = null;
+        if (!isNull(mapRenderer)) {
+            mapRenderer.dispose();
+        }
+        if (!isNull(simulation)) {
+            simulation.dispose();
+        }
+        if (!isNull(worldSimulation)) {
+            worldSimulation.dispose();
+        }
+        if (!isNull(profilerOverlay)) {
+            profilerOverlay.dispose();
+        }
+        if (!isNull(replayRecorder)) {
+            replayRecorder.dispose();
+        }
+        if (!isNull(assetReloader)) {
+            assetReloader.dispose();
+        }
+        Gdx.input.setInputProcessor(null);
+    }
+
+    private void setupViewport(int width, int height) {
+        // Make the viewport a percentage of the total display area
+        VIEWPORT.virtualWidth = width;
+        VIEWPORT.virtualHeight = height;
+
+        // Current viewport dimensions
+        VIEWPORT.viewportWidth = VIEWPORT.virtualWidth;
+        VIEWPORT.viewportHeight = VIEWPORT.virtualHeight;
+
+        // Pixel dimensions of display
+        VIEWPORT.physicalWidth = Gdx.graphics.getWidth();
+        VIEWPORT.physicalHeight = Gdx.graphics.getHeight();
+
+        // Aspect ratio for current viewport
+        VIEWPORT.aspectRatio = (VIEWPORT.virtualWidth / VIEWPORT.virtualHeight);
+
+        // Update viewport if there could be skewing
+        if (VIEWPORT.physicalWidth / VIEWPORT.physicalHeight >= VIEWPORT.aspectRatio) {
+            // Letterbox left and right
+            VIEWPORT.viewportWidth = VIEWPORT.viewportHeight * (VIEWPORT.physicalWidth / VIEWPORT.physicalHeight);
+            VIEWPORT.viewportHeight = VIEWPORT.virtualHeight;
+        } else {
+            // Letterbox above and below
+            VIEWPORT.viewportWidth = VIEWPORT.virtualWidth;
+            VIEWPORT.viewportHeight = VIEWPORT.viewportWidth * (VIEWPORT.physicalHeight / VIEWPORT.physicalWidth);
+        }
+
+        Log.debug(TAG, "WorldRenderer: virtual: ({},{})", VIEWPORT.virtualWidth, VIEWPORT.virtualHeight);
+        Log.debug(TAG, "WorldRenderer: viewport: ({},{})", VIEWPORT.viewportWidth, VIEWPORT.viewportHeight);
+        Log.debug(TAG, "WorldRenderer: physical: ({},{})", VIEWPORT.physicalWidth, VIEWPORT.physicalHeight);
+    }
+
+    // Entities of the map other than the player, the ones outside the view are skipped
+    private void renderWanderers(EntityWorld world) {
+        if (isNull(wandererSheet)) {
+            return;
+        }
+
+        float halfWidth = VIEWPORT.viewportWidth / 2f + 1f;
+        float halfHeight = VIEWPORT.viewportHeight / 2f + 1f;
+        boolean[] alive = world.getAlive();
+        for (int i = 0; i < world.size(); i++) {
+            if (!alive[i] || i == player.getSlot()) {
+                continue;
+            }
+
+            float x = world.getX(i);
+            float y = world.getY(i);
+            if (Math.abs(x - camera.position.x) > halfWidth || Math.abs(y - camera.position.y) > halfHeight) {
+                continue;
+            }
+
+            TextureRegion frame = wandererSheet.getWalkAnimation(DIRECTIONS[world.getDirection(i)]).getKeyFrame(world.getFrameTime(i));
+            mapRenderer.getBatch().draw(frame, x, y, 1, 1);
+        }
+    }
+
+    private boolean updatePortalLayerActivation(Rectangle boundingBox) {
+        String mapName = mapManager.getPortalTarget(boundingBox);
+        if (isNull(mapName)) {
+            return false;
+        }
+
+        // Remember where we left this map, then stream the next one in without blocking the frame
+        mapManager.setClosestStartPositionFromScaledUnits(player.getCurrentPlayerPosition());
+        mapManager.loadMapAsync(mapName);
+        gameState = GameState.LOADING;
+        return true;
+    }
+
+    private void finishMapTransition() {
+        // Into the world of the new map before the old one goes back to its worker
+        Vector2 start = mapManager.getPlayerStartUnitScaled();
+        player.moveTo(mapManager.getWorld(), start.x, start.y);
+        player.setCurrentPosition(start.x, start.y);
+        // The save file holds the old map's world, the next autosave has to write all of this one
+        mapManager.getWorld().markAllDirty();
+
+        mapRenderer.setMap(mapManager.getCurrentMap());
+        worldSimulation.setForeground(mapManager.getCurrentMapName());
+        if (!isNull(replayRecorder)) {
+            replayRecorder.mapEntered(mapManager.getCurrentMapName());
+        }
+
+        Log.debug(TAG, "Entered map {}", mapManager.getCurrentMapName());
+        gameState = GameState.RUNNING;
+    }
 }
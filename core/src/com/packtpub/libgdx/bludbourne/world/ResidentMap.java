@@ -0,0 +1,362 @@
+package com.packtpub.libgdx.bludbourne.world;
+
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import com.packtpub.libgdx.bludbourne.CollisionGrid;
+import com.packtpub.libgdx.bludbourne.EntityWorld;
+import com.packtpub.libgdx.bludbourne.MapManager;
+import com.packtpub.libgdx.bludbourne.PortalIndex;
+import com.packtpub.libgdx.bludbourne.SimulationScheduler;
+import com.packtpub.libgdx.bludbourne.SpawnIndex;
+import com.packtpub.libgdx.bludbourne.SweptCollisionResolver;
+import com.packtpub.libgdx.bludbourne.logging.Log;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.Objects.isNull;
+
+/**
+ * A map kept resident by {@link WorldSimulation}, with its own entities, collision grid, portals and
+ * spawn points. The world has one owner at a time: the render thread while the map is in the foreground,
+ * where {@link MapManager} and the player use it, and a worker thread of its own otherwise. Other threads
+ * reach the map through messages in its inbox, applied by the owner, and read the counts it publishes.
+ *
+ * The indices are built on the render thread and never changed afterwards, so any thread may read them.
+ * A reloaded map gets new ones, see {@link #build(TiledMap)}.
+ *
+ * Background maps tick at the background rate with a step to match, so entities keep their speed at a
+ * fraction of the cost. Walking entities turn clockwise when they are blocked, and the ones that walk
+ * into a portal are handed to the map behind it.
+ */
+public class ResidentMap implements Runnable {
+
+    private static final String TAG = ResidentMap.class.getSimpleName();
+
+    // An entity arriving from another map, or spawned at a position when fromMapName is null
+    static final class Message {
+        final String fromMapName;
+        final float x;
+        final float y;
+        final int direction;
+        final int state;
+
+        Message(String fromMapName, float x, float y, int direction, int state) {
+            this.fromMapName = fromMapName;
+            this.x = x;
+            this.y = y;
+            this.direction = direction;
+            this.state = state;
+        }
+    }
+
+    private final String name;
+    private final WorldSimulation owner;
+    private final ConcurrentLinkedQueue<Message> inbox;
+
+    // Owned by the render thread in the foreground, by the worker otherwise
+    private final EntityWorld world;
+    private final SimulationScheduler backgroundSimulation;
+    private final Vector2 arrival;
+
+    private volatile CollisionGrid collisionGrid;
+    private volatile PortalIndex portalIndex;
+    private volatile SpawnIndex spawnIndex;
+    // Render thread only, the map the indices were built from
+    private TiledMap map;
+
+    // Held by the worker for a whole tick, taking the map into the foreground waits for it
+    private final ReentrantLock tickLock;
+    private Thread worker;
+    private volatile boolean running;
+    private volatile boolean foreground;
+
+    // Published by the owner after every tick
+    private volatile int liveCount;
+    private volatile long ticks;
+    private volatile long arrived;
+    private volatile long departed;
+
+    ResidentMap(String name, WorldSimulation owner, float backgroundStep) {
+        this.name = name;
+        this.owner = owner;
+        inbox = new ConcurrentLinkedQueue<>();
+        tickLock = new ReentrantLock();
+
+        world = new EntityWorld();
+        arrival = new Vector2();
+
+        // One worker thread per map already, the scheduler never forks
+        backgroundSimulation = new SimulationScheduler(backgroundStep, 1);
+        backgroundSimulation.addStepListener(new SimulationScheduler.StepListener() {
+            @Override
+            public void onStep(float step) {
+                turnBlocked(backgroundSimulation, -1);
+            }
+        });
+    }
+
+    // Render thread, replaces the indices with ones built from the map
+    void build(TiledMap map) {
+        this.map = map;
+
+        CollisionGrid collisionGrid = new CollisionGrid();
+        collisionGrid.build(map.getLayers().get(MapManager.MAP_COLLISION_LAYER));
+        PortalIndex portalIndex = new PortalIndex();
+        portalIndex.build(map.getLayers().get(MapManager.MAP_PORTAL_LAYER));
+        SpawnIndex spawnIndex = new SpawnIndex();
+        spawnIndex.build(map.getLayers().get(MapManager.MAP_SPAWNS_LAYER));
+
+        this.collisionGrid = collisionGrid;
+        this.portalIndex = portalIndex;
+        this.spawnIndex = spawnIndex;
+    }
+
+    // Render thread, before start(): walking entities at start points picked at random
+    void populate(int count) {
+        if (spawnIndex.getCount(MapManager.PLAYER_START) == 0) {
+            return;
+        }
+
+        float width = map.getProperties().get("width", 0, Integer.class) * map.getProperties().get("tilewidth", 16, Integer.class);
+        float height = map.getProperties().get("height", 0, Integer.class) * map.getProperties().get("tileheight", 16, Integer.class);
+        for (int i = 0; i < count; i++) {
+            spawnIndex.findNearest(MapManager.PLAYER_START, MathUtils.random(width), MathUtils.random(height), arrival);
+            int slot = world.create(arrival.x * MapManager.UNIT_SCALE, arrival.y * MapManager.UNIT_SCALE);
+            world.setDirection(slot, MathUtils.random(3));
+            world.setState(slot, EntityWorld.STATE_WALKING);
+        }
+        liveCount = world.getLiveCount();
+    }
+
+    void start() {
+        running = true;
+        worker = new Thread(this, "World " + name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // Waits for the current tick to finish
+    void stop() {
+        running = false;
+        if (isNull(worker)) {
+            return;
+        }
+
+        LockSupport.unpark(worker);
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        backgroundSimulation.dispose();
+    }
+
+    void receive(Message message) {
+        inbox.add(message);
+    }
+
+    // Render thread. Taking the map into the foreground waits for a background tick in progress
+    void setForeground(boolean foreground) {
+        if (this.foreground == foreground) {
+            return;
+        }
+
+        this.foreground = foreground;
+        if (foreground) {
+            tickLock.lock();
+            tickLock.unlock();
+        } else if (!isNull(worker)) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    // Render thread, in the foreground; the player's slot is left to its controller
+    void update(float delta, SimulationScheduler simulation, int playerSlot) {
+        applyMessages();
+        simulation.update(delta, world, collisionGrid);
+        handOff(playerSlot);
+
+        liveCount = world.getLiveCount();
+        ticks++;
+    }
+
+    // Runs before a step, so it sees what the previous one did
+    void turnBlocked(SimulationScheduler simulation, int playerSlot) {
+        boolean[] alive = world.getAlive();
+        int[] states = world.getStates();
+        int[] directions = world.getDirections();
+
+        for (int i = 0; i < world.size(); i++) {
+            if (i != playerSlot && alive[i] && states[i] == EntityWorld.STATE_WALKING && simulation.wasBlocked(i)) {
+                world.setDirection(i, (directions[i] + 1) & 3);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        Log.debug(TAG, "{} resident", name);
+
+        long last = System.nanoTime();
+        while (running) {
+            long now = System.nanoTime();
+            float delta = (now - last) / 1000000000f;
+            last = now;
+
+            if (foreground) {
+                // The render thread ticks it until it is sent back
+                LockSupport.park(this);
+                last = System.nanoTime();
+                continue;
+            }
+
+            tickLock.lock();
+            try {
+                if (!foreground) {
+                    applyMessages();
+                    backgroundSimulation.update(delta, world, collisionGrid);
+                    handOff(-1);
+
+                    liveCount = world.getLiveCount();
+                    ticks++;
+                }
+            } finally {
+                tickLock.unlock();
+            }
+
+            long sleep = (long) (backgroundSimulation.getStep() * 1000000000L) - (System.nanoTime() - now);
+            if (sleep > 0) {
+                LockSupport.parkNanos(this, sleep);
+            }
+        }
+
+        Log.debug(TAG, "{} stopped", name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Only the owner may touch it, see the class comment
+    public EntityWorld getWorld() {
+        return world;
+    }
+
+    public CollisionGrid getCollisionGrid() {
+        return collisionGrid;
+    }
+
+    public PortalIndex getPortalIndex() {
+        return portalIndex;
+    }
+
+    public SpawnIndex getSpawnIndex() {
+        return spawnIndex;
+    }
+
+    TiledMap getMap() {
+        return map;
+    }
+
+    // Arrivals come out at a start point, maps without one turn them away
+    boolean acceptsArrivals() {
+        return spawnIndex.getCount(MapManager.PLAYER_START) > 0;
+    }
+
+    public boolean isForeground() {
+        return foreground;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getLiveCount() {
+        return liveCount;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    // Entities that came in through a portal
+    public long getArrived() {
+        return arrived;
+    }
+
+    // Entities that left through a portal
+    public long getDeparted() {
+        return departed;
+    }
+
+    private void applyMessages() {
+        Message message;
+        while (!isNull(message = inbox.poll())) {
+            float x = message.x;
+            float y = message.y;
+
+            if (!isNull(message.fromMapName)) {
+                // Come out at the start point nearest the portal back, like the player does
+                int portal = portalIndex.findTo(message.fromMapName);
+                arrival.set(0f, 0f);
+                if (portal >= 0) {
+                    arrival.set(portalIndex.getCenterX(portal), portalIndex.getCenterY(portal));
+                }
+                if (!spawnIndex.findNearest(MapManager.PLAYER_START, arrival.x, arrival.y, arrival)) {
+                    // A reload took the start points away after it was sent, step out below the portal back
+                    if (portal < 0) {
+                        Log.debug(TAG, "{} has no way in from {}, dropped an arrival", name, message.fromMapName);
+                        continue;
+                    }
+                    arrival.set(portalIndex.getCenterX(portal) - SweptCollisionResolver.BOUNDING_BOX_WIDTH / 2f,
+                            portalIndex.getY(portal) - SweptCollisionResolver.BOUNDING_BOX_HEIGHT - 1f);
+                }
+                x = arrival.x * MapManager.UNIT_SCALE;
+                y = arrival.y * MapManager.UNIT_SCALE;
+                arrived++;
+            }
+
+            int slot = world.create(x, y);
+            world.setDirection(slot, message.direction);
+            world.setState(slot, message.state);
+        }
+    }
+
+    private void handOff(int playerSlot) {
+        PortalIndex portalIndex = this.portalIndex;
+        if (portalIndex.getCount() == 0) {
+            return;
+        }
+
+        boolean[] alive = world.getAlive();
+        for (int i = 0; i < world.size(); i++) {
+            if (i == playerSlot || !alive[i]) {
+                continue;
+            }
+
+            int portal = portalIndex.find(world.getX(i) / MapManager.UNIT_SCALE, world.getY(i) / MapManager.UNIT_SCALE,
+                    SweptCollisionResolver.BOUNDING_BOX_WIDTH, SweptCollisionResolver.BOUNDING_BOX_HEIGHT);
+            if (portal < 0) {
+                continue;
+            }
+
+            String target = portalIndex.getTarget(portal);
+            if (!isNull(target) && owner.deliver(target, new Message(name, 0f, 0f, world.getDirection(i), world.getState(i)))) {
+                world.destroy(i);
+                departed++;
+            } else {
+                // Nowhere to go, walk away from the portal
+                float dx = world.getX(i) / MapManager.UNIT_SCALE + SweptCollisionResolver.BOUNDING_BOX_WIDTH / 2f - portalIndex.getCenterX(portal);
+                float dy = world.getY(i) / MapManager.UNIT_SCALE + SweptCollisionResolver.BOUNDING_BOX_HEIGHT / 2f - portalIndex.getCenterY(portal);
+                if (Math.abs(dx) > Math.abs(dy)) {
+                    world.setDirection(i, dx > 0f ? EntityWorld.DIRECTION_RIGHT : EntityWorld.DIRECTION_LEFT);
+                } else {
+                    world.setDirection(i, dy > 0f ? EntityWorld.DIRECTION_UP : EntityWorld.DIRECTION_DOWN);
+                }
+            }
+        }
+    }
+}
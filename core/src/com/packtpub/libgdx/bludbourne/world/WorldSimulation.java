@@ -0,0 +1,179 @@
+package com.packtpub.libgdx.bludbourne.world;
+
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.utils.Disposable;
+import com.packtpub.libgdx.bludbourne.Entity;
+import com.packtpub.libgdx.bludbourne.MapCache;
+import com.packtpub.libgdx.bludbourne.MapManager;
+import com.packtpub.libgdx.bludbourne.SimulationScheduler;
+import com.packtpub.libgdx.bludbourne.logging.Log;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Keeps every map of the game resident and simulated at the same time, one {@link ResidentMap} each;
+ * {@link MapManager} hands each map over the first time it is loaded. The foreground map, where the
+ * player is, is the current map of MapManager: its world holds the player and is stepped on the render
+ * thread by the game's simulation, see {@link #update(float, int)}. The rest tick on worker threads of
+ * their own at the background rate. Entities cross between maps through the portal layers as messages,
+ * so no thread ever touches a world it does not own.
+ *
+ * Residents hold no asset references, only what they built from their map. A map stays resident until
+ * the simulation is disposed, whether its assets are in the {@link MapCache} or not, so no map ever
+ * loses its entities.
+ */
+public class WorldSimulation implements Disposable {
+
+    private static final String TAG = WorldSimulation.class.getSimpleName();
+
+    public static final float DEFAULT_BACKGROUND_RATE = 10f;
+    // Walking entities a map starts with when it becomes resident
+    public static final int DEFAULT_POPULATION = 8;
+
+    private final Map<String, ResidentMap> maps;
+    private final SimulationScheduler simulation;
+    private final float backgroundStep;
+    private int population;
+    // Render thread only
+    private ResidentMap foreground;
+    private int playerSlot;
+    private volatile boolean disposed;
+
+    public WorldSimulation(SimulationScheduler simulation) {
+        this(simulation, DEFAULT_BACKGROUND_RATE);
+    }
+
+    // The foreground map is stepped by simulation, background maps tick this many times a second
+    public WorldSimulation(SimulationScheduler simulation, float backgroundRate) {
+        maps = new ConcurrentHashMap<>();
+        this.simulation = simulation;
+        backgroundStep = 1f / backgroundRate;
+        population = DEFAULT_POPULATION;
+        playerSlot = -1;
+
+        simulation.addStepListener(new SimulationScheduler.StepListener() {
+            @Override
+            public void onStep(float step) {
+                if (!isNull(foreground)) {
+                    foreground.turnBlocked(WorldSimulation.this.simulation, playerSlot);
+                }
+            }
+        });
+    }
+
+    public void setPopulation(int population) {
+        this.population = Math.max(0, population);
+    }
+
+    // Render thread, called by MapManager when the map becomes current. Takes the map into the foreground,
+    // making it resident first, and rebuilds its indices if it was loaded again. The map the player is
+    // leaving stays in the foreground too until setForeground(String)
+    public ResidentMap acquire(String mapName, TiledMap map) {
+        ResidentMap residentMap = maps.get(mapName);
+        if (isNull(residentMap)) {
+            return create(mapName, map, true);
+        }
+
+        residentMap.setForeground(true);
+        if (residentMap.getMap() != map) {
+            residentMap.build(map);
+        }
+        return residentMap;
+    }
+
+    // Render thread, makes the map resident in the background unless it already is
+    public void admit(String mapName, TiledMap map) {
+        if (disposed || maps.containsKey(mapName)) {
+            return;
+        }
+
+        create(mapName, map, false);
+    }
+
+    // Render thread, once the player has moved into the world of the map; every other map goes to the background
+    public void setForeground(String mapName) {
+        for (ResidentMap residentMap : maps.values()) {
+            if (!residentMap.getName().equals(mapName)) {
+                residentMap.setForeground(false);
+            }
+        }
+        foreground = maps.get(mapName);
+    }
+
+    // Render thread, steps the foreground world with the game's simulation; the player's slot is left to its controller
+    public void update(float delta, int playerSlot) {
+        if (isNull(foreground)) {
+            return;
+        }
+
+        this.playerSlot = playerSlot;
+        foreground.update(delta, simulation, playerSlot);
+    }
+
+    // Render thread, picks up a map AssetReloader loaded again
+    public void mapReloaded(String mapName, TiledMap map) {
+        ResidentMap residentMap = maps.get(mapName);
+        if (!isNull(residentMap) && residentMap.getMap() != map) {
+            residentMap.build(map);
+            Log.debug(TAG, "Rebuilt {}", mapName);
+        }
+    }
+
+    // Any thread, position in world units. Returns false if the map is not resident
+    public boolean spawn(String mapName, float x, float y, Entity.Direction direction, Entity.State state) {
+        return deliver(mapName, new ResidentMap.Message(null, x, y, direction.ordinal(), state.ordinal()));
+    }
+
+    public ResidentMap getMap(String mapName) {
+        return maps.get(mapName);
+    }
+
+    // Entities on every map as of their last tick
+    public int getLiveCount() {
+        int count = 0;
+        for (ResidentMap residentMap : maps.values()) {
+            count += residentMap.getLiveCount();
+        }
+        return count;
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+        for (ResidentMap residentMap : maps.values()) {
+            residentMap.stop();
+        }
+
+        Log.debug(TAG, "Stopped {} maps", maps.size());
+        maps.clear();
+        foreground = null;
+    }
+
+    private ResidentMap create(String mapName, TiledMap map, boolean foreground) {
+        ResidentMap residentMap = new ResidentMap(mapName, this, backgroundStep);
+        residentMap.build(map);
+        residentMap.setForeground(foreground);
+        residentMap.populate(population);
+        residentMap.start();
+        maps.put(mapName, residentMap);
+        Log.debug(TAG, "{} is resident", mapName);
+        return residentMap;
+    }
+
+    // Any thread. Arrivals are turned away by maps that are not resident or have nowhere to put them
+    boolean deliver(String mapName, ResidentMap.Message message) {
+        ResidentMap residentMap = maps.get(mapName);
+        if (isNull(residentMap) || disposed) {
+            return false;
+        }
+        if (!isNull(message.fromMapName) && !residentMap.acceptsArrivals()) {
+            return false;
+        }
+
+        residentMap.receive(message);
+        return true;
+    }
+}
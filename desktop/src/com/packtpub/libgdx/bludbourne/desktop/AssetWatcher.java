@@ -0,0 +1,140 @@
+package com.packtpub.libgdx.bludbourne.desktop;
+
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.packtpub.libgdx.bludbourne.AssetReloader;
+import com.packtpub.libgdx.bludbourne.logging.Log;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Watches the given directories of the assets directory and everything below them and reports created
+ * and modified files to {@link AssetReloader}, from a thread of its own. The WatchService only watches
+ * single directories, so every directory is registered, including the ones created later. The rest of
+ * the assets directory is left alone, the game writes its logs, saves and recordings there.
+ */
+public class AssetWatcher implements Disposable {
+
+	private static final String TAG = AssetWatcher.class.getSimpleName();
+
+	private final Path root;
+	private final Set<Path> assetDirectories;
+	private final WatchService watchService;
+	private final Map<WatchKey, Path> directories;
+	private final Thread thread;
+
+	// Asset directories relative to the root, they do not have to exist yet
+	public AssetWatcher(Path root, String... assetDirectories) {
+		this.root = root.toAbsolutePath().normalize();
+		this.assetDirectories = new HashSet<>();
+		for (String assetDirectory : assetDirectories) {
+			this.assetDirectories.add(this.root.resolve(assetDirectory).normalize());
+		}
+		directories = new HashMap<>();
+
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+			registerAll(this.root);
+		} catch (IOException e) {
+			throw new GdxRuntimeException("Could not watch " + root, e);
+		}
+
+		thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				watch();
+			}
+		}, "Asset watcher");
+		thread.setDaemon(true);
+		thread.start();
+
+		Log.info(TAG, "Watching {} in {} for changes", this.assetDirectories.size(), this.root);
+	}
+
+	@Override
+	public void dispose() {
+		try {
+			// Wakes the thread up with a ClosedWatchServiceException
+			watchService.close();
+		} catch (IOException e) {
+			Log.error(TAG, "Could not stop watching", e);
+		}
+	}
+
+	private void watch() {
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+				Path directory = directories.get(key);
+
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW || isNull(directory)) {
+						continue;
+					}
+
+					Path path = directory.resolve((Path) event.context());
+					if (!isAsset(path)) {
+						continue;
+					}
+					if (Files.isDirectory(path)) {
+						if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+							registerAll(path);
+						}
+						continue;
+					}
+
+					AssetReloader.assetChanged(root.relativize(path).toString());
+				}
+
+				if (!key.reset()) {
+					directories.remove(key);
+				}
+			}
+		} catch (ClosedWatchServiceException | InterruptedException e) {
+			// Disposed
+		} catch (IOException e) {
+			Log.error(TAG, "Stopped watching", e);
+		}
+	}
+
+	private void registerAll(Path start) throws IOException {
+		Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) throws IOException {
+				// The root is only watched for asset directories that are created later
+				if (!directory.equals(root) && !isAsset(directory)) {
+					return FileVisitResult.SKIP_SUBTREE;
+				}
+				WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+				directories.put(key, directory);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	private boolean isAsset(Path path) {
+		for (Path assetDirectory : assetDirectories) {
+			if (path.startsWith(assetDirectory)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
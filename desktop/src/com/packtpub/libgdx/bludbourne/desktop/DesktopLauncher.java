@@ -5,17 +5,67 @@ import com.badlogic.gdx.Application;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
+import com.packtpub.libgdx.bludbourne.AssetReloader;
 import com.packtpub.libgdx.bludbourne.MyBludBourne;
+import com.packtpub.libgdx.bludbourne.boot.BootLoader;
+import com.packtpub.libgdx.bludbourne.logging.AsyncLogAppender;
+import com.packtpub.libgdx.bludbourne.logging.Log;
+import com.packtpub.libgdx.bludbourne.profiling.FrameAllocationTracker;
+import com.packtpub.libgdx.bludbourne.profiling.Profiler;
+import com.packtpub.libgdx.bludbourne.replay.ReplayRecorder;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static java.util.Objects.isNull;
 
 public class DesktopLauncher {
 	public static void main (String[] arg) {
+		long launchNanos = System.nanoTime();
+
+		// Everything goes to the log file from a background thread, the console only gets debug output with --verbose
+		AsyncLogAppender logAppender = new AsyncLogAppender(new File("logs/bludbourne.log"),
+				Arrays.asList(arg).contains("--verbose") ? Log.DEBUG : Log.INFO);
+		Log.setAppender(logAppender);
+		Log.setLevel(Log.DEBUG);
+
+		// Logs frames that allocate or collect garbage, for chasing GC hitches
+		FrameAllocationTracker.setEnabled(Arrays.asList(arg).contains("--track-allocations")
+				|| Boolean.getBoolean("bludbourne.trackAllocations"));
+		// Frame time overlay plus metrics written to profiling/ every few seconds
+		Profiler.setEnabled(Arrays.asList(arg).contains("--profile")
+				|| Boolean.getBoolean("bludbourne.profile"));
+		// Input and frame times go to replays/last.brpl for ReplayLauncher to play back
+		ReplayRecorder.setEnabled(Arrays.asList(arg).contains("--record")
+				|| Boolean.getBoolean("bludbourne.record"));
+		// Maps and textures edited under the assets directory are reloaded while the game runs
+		AssetWatcher assetWatcher = null;
+		if (Arrays.asList(arg).contains("--hot-reload") || Boolean.getBoolean("bludbourne.hotReload")) {
+			AssetReloader.setEnabled(true);
+			// Only where assets live, the game writes logs, saves, profiles and replays next to them
+			assetWatcher = new AssetWatcher(Paths.get(""), "maps", "sprites", "atlas");
+		}
+
+		// Maps and sprites are decoded in parallel behind a loading screen, --serial-boot loads each on first use
+		BootLoader.setEnabled(!Arrays.asList(arg).contains("--serial-boot")
+				&& !Boolean.getBoolean("bludbourne.serialBoot"));
+
 		Lwjgl3ApplicationConfiguration config = new Lwjgl3ApplicationConfiguration();
 
 		config.setTitle("BludBourne");
 		config.setWindowSizeLimits(800, 600, 800, 600);
 
-        Gdx.app = new Lwjgl3Application(new MyBludBourne(), config);
+        Gdx.app = new Lwjgl3Application(new MyBludBourne(launchNanos), config);
 
         Gdx.app.setLogLevel(Application.LOG_DEBUG);
+
+		if (!isNull(assetWatcher)) {
+			assetWatcher.dispose();
+		}
+
+		// The application has exited by now, write out what is still queued
+		Log.setAppender(null);
+		logAppender.dispose();
 	}
 }
@@ -0,0 +1,60 @@
+package com.packtpub.libgdx.bludbourne.desktop;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.packtpub.libgdx.bludbourne.Utility;
+import com.packtpub.libgdx.bludbourne.replay.ReplayPlayer;
+import com.packtpub.libgdx.bludbourne.replay.ReplayRecorder;
+
+import java.io.File;
+import java.util.Locale;
+
+/**
+ * Plays a recorded session back headlessly at full speed and exits with 1 if the player did not end up
+ * where the recording says, for catching simulation changes and timing them:
+ *
+ * <pre>
+ * gradlew desktop:replay -Preplay=replays/last.brpl
+ * </pre>
+ */
+public class ReplayLauncher {
+	public static void main (String[] arg) {
+		final String path = arg.length > 0 ? arg[0] : ReplayRecorder.DEFAULT_PATH;
+
+		Utility.setHeadless(true);
+
+		HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+		// No frames of our own, the replay drives the simulation from create()
+		config.renderInterval = -1;
+
+		new HeadlessApplication(new ApplicationAdapter() {
+			@Override
+			public void create() {
+				int exitCode = 1;
+				try {
+					ReplayPlayer replay = new ReplayPlayer(Gdx.files.absolute(new File(path).getAbsolutePath()));
+					boolean match = replay.play();
+
+					double elapsedSeconds = replay.getElapsedNanos() / 1e9;
+					System.out.println(String.format(Locale.ROOT,
+							"%s: %d frames, %d steps, %.1fs of play replayed in %.3fs (%.0fx)",
+							path, replay.getFrames(), replay.getSteps(), replay.getSimulatedSeconds(),
+							elapsedSeconds, replay.getSimulatedSeconds() / elapsedSeconds));
+					if (match) {
+						System.out.println(String.format(Locale.ROOT, "All %d checkpoints match", replay.getCheckpoints()));
+						exitCode = 0;
+					} else {
+						System.out.println(String.format(Locale.ROOT, "%d mismatches, the first in frame %d",
+								replay.getMismatches(), replay.getFirstMismatchFrame()));
+					}
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+				// The headless loop runs on its own thread, main() has long returned
+				System.exit(exitCode);
+			}
+		}, config);
+	}
+}